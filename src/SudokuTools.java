@@ -15,12 +15,49 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import batch.JobRunner;
+import benchmark.HeuristicBenchmark;
+import benchmark.SizeBenchmark;
 import generator.Generator;
+import generator.Isomorph;
+import generator.LatinSquareSolver;
+import generator.Symmetry;
 import generator.Transformer;
+import monitoring.Metrics;
 import rating.Rater;
+import rating.TimeModel;
+import solver.Branching;
+import solver.MinimalityCheck;
+import solver.Portfolio;
+import solver.SearchLimit;
+import solver.SearchStatistics;
+import solver.SolutionEstimator;
+import solver.SolutionIterator;
+import solver.Strategy;
 import solver.SudokuProblem;
+import solver.ValueOrder;
+import topology.Cage;
+import topology.Topology;
+import topology.Variant;
 import utile.SudokuIO;
 import utile.SudokuPrinter;
 
@@ -30,7 +67,43 @@ import utile.SudokuPrinter;
  *
  */
 public class SudokuTools {
+	
+	// probes of the search tree to estimate the number of solutions
+	private static final int ESTIMATE_SAMPLES = 1000;
+	
+	// the standard output is flushed when this many bytes are buffered or
+	// when the program ends, not after every line
+	private static final int OUTPUT_BUFFER = 1 << 16;
+	
+	// commands whose second argument is a file of Sudokus, which jobs split
+	// into shards
+	private static final List<String> FILE_COMMANDS = 
+			Arrays.asList("-sf", "-mf", "-rf");
+	// options of jobs that are not passed on to their workers
+	private static final List<String> JOB_OPTIONS = Arrays.asList("--shards",
+			"--workers", "--retries", "--work", "--output", "--launcher", 
+			"--worker-jvm-opts");
+	
 	public static void main(String[] args) {
+		final PrintStream out = new PrintStream(new BufferedOutputStream(
+				new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER));
+		System.setOut(out);
+		// flush on System.exit and on interrupts, too
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				out.flush();
+			}
+		});
+		startMetrics(args);
+		try {
+			run(args);
+		} finally {
+			Metrics.stopReporting();
+		}
+	}
+	
+	private static void run(String[] args) {
 		if(args.length == 0) {
 			System.out.println("SudokuTools  Copyright (C) 2014 Robert Grönsfeld");
 			System.out.println("This program comes with ABSOLUTELY NO WARRANTY; "
@@ -44,14 +117,100 @@ public class SudokuTools {
 			System.out.println("-ps SHORT to print a Sudoku given in the short format");
 			System.out.println("-s PATH to solve a .sdk file");
 			System.out.println("-ss SHORT to solve a Sudoku given in the short format");
-			System.out.println("-g to generate a Sudoku problem");
-			System.out.println("-gs to generate a Sudoku in the short format");
+			System.out.println("-sf PATH to solve every Sudoku of a file "
+					+ "with one Sudoku in the short format per line");
+			System.out.println("-ls SHORT [COUNT] to list up to COUNT "
+					+ "solutions (default 2) of a Sudoku in the short format");
+			System.out.println("-g [BOXSIZE] to generate a Sudoku problem, "
+					+ "optionally with a box size from 2 to 5 (default 3)");
+			System.out.println("-gs [BOXSIZE] to generate a Sudoku in the "
+					+ "short format");
+			System.out.println("-gj [BOXSIZE] to generate a jigsaw Sudoku "
+					+ "and its region map in the short format");
+			System.out.println("-gm [BOXSIZE] to generate a samurai Sudoku "
+					+ "of five overlapping grids in the short format");
+			System.out.println("-gk [BOXSIZE] to generate the cages of a "
+					+ "killer Sudoku, optionally with a box size of 2 or 3");
+			System.out.println("-ms SHORT to check if a Sudoku in the short "
+					+ "format is minimal");
+			System.out.println("-mf PATH to check every Sudoku of a file "
+					+ "with one Sudoku in the short format per line");
+			System.out.println("-i SHORT [COUNT] to create COUNT distinct "
+					+ "isomorphs (default 10) of a Sudoku in the short format");
+			System.out.println("-lc ORDER to count the Latin squares of an "
+					+ "order from 1 to 9, e.g. in seconds up to 7");
+			System.out.println("-le ORDER to list the reduced Latin squares "
+					+ "of an order in the short format, first row and column "
+					+ "in ascending order");
 			System.out.println("-r PATH to rate a .sdk file");
+			System.out.println("-rf PATH to rate every Sudoku of a file "
+					+ "with one Sudoku in the short format per line");
 			System.out.println("-rs SHORT to rate a Sudoku in the short format");
 			System.out.println("-tf PATH to get the permutation of a .sdk file");
 			System.out.println("-tfs SHORT to get the permutation of a Sudoku in the short format");
 			System.out.println();
 			System.out.println("-t PATH to create a training table");
+			System.out.println("-fit PATH [TRIM] to fit the solve time "
+					+ "estimate to a training table, dropping outliers beyond "
+					+ "TRIM standard errors (default 3, 0 keeps all)");
+			System.out.println("-j COMMAND ... to run a command on shards of "
+					+ "its file in worker processes and print their outputs "
+					+ "in order, e.g. \"-j -sf PATH\"; commands without a "
+					+ "file run once per shard");
+			System.out.println("-b to benchmark the solver for every box size");
+			System.out.println("-hb PATH to benchmark every branching "
+					+ "heuristic and value order on the Sudokus of a file");
+			System.out.println();
+			System.out.println("Options:");
+			System.out.println("--timeout MILLIS to stop solving, generating "
+					+ "or rating after the given time");
+			System.out.println("--stats to print search statistics after "
+					+ "solving, generating or rating");
+			System.out.println("--backjump to solve with conflict-directed "
+					+ "backjumping and nogood learning");
+			System.out.println("--branching NAME to pick the cell of every "
+					+ "branching by mrv, mrv-degree, mrv-random or dom-wdeg");
+			System.out.println("--order NAME to try values in ascending, "
+					+ "descending, random or least-constraining order");
+			System.out.println("--restarts NODES to restart solving after "
+					+ "NODES nodes, doubling them for every restart");
+			System.out.println("--portfolio to race several solving "
+					+ "strategies on every processor and count their wins");
+			System.out.println("--shards COUNT to split the file of a job "
+					+ "into COUNT shards (default twice the workers)");
+			System.out.println("--workers COUNT to run COUNT workers of a job "
+					+ "at a time (default one per processor)");
+			System.out.println("--retries COUNT to rerun a failed shard up to "
+					+ "COUNT times (default 2)");
+			System.out.println("--work DIR to keep the outputs and completion "
+					+ "markers of the shards in DIR, a rerun skips the done "
+					+ "shards (default the file name plus .shards)");
+			System.out.println("--output PATH to write the merged outputs of "
+					+ "a job to PATH instead of the standard output");
+			System.out.println("--launcher CMD to start every worker behind "
+					+ "a command, e.g. \"ssh node1\", with the paths on a "
+					+ "shared file system");
+			System.out.println("--worker-jvm-opts OPTS to start the workers "
+					+ "of a job with the JVM options OPTS, e.g. \"-Xmx2g\", "
+					+ "instead of those of the job without agents and "
+					+ "recordings");
+			System.out.println("--range START:END to read only the lines of "
+					+ "a file that start within the byte range");
+			System.out.println("--metrics PATH to append throughput and "
+					+ "latency metrics to a file");
+			System.out.println("--variants LIST to solve or generate "
+					+ "variants, a comma separated list of diagonal, "
+					+ "anti-king, anti-knight and disjoint-groups");
+			System.out.println("--model PATH to write the fitted "
+					+ "coefficients to PATH instead of time-model.txt");
+			System.out.println("--symmetry NAME to generate givens with "
+					+ "rotational, mirror or diagonal symmetry");
+			System.out.println("--regions MAP to solve a jigsaw Sudoku with "
+					+ "the region map given in the short format");
+			System.out.println("--samurai to solve a samurai Sudoku given as "
+					+ "one grid, e.g. 21x21, with blanks between the grids");
+			System.out.println("--cages SPEC to solve a killer Sudoku with "
+					+ "cages like 3:0,1;15:2,11,12 (sum:cells)");
 		}
 		else if(args[0].equals("-p"))
 			SudokuPrinter.print(
@@ -59,33 +218,87 @@ public class SudokuTools {
 		else if(args[0].equals("-ps"))
 			SudokuPrinter.print(SudokuIO.loadSudoku(args[1]));
 		else if(args[0].equals("-s")) {
-			SudokuProblem problem = new SudokuProblem(
-					SudokuIO.loadSudoku(new File(args[1])));
+			int[][] sudoku = SudokuIO.loadSudoku(new File(args[1]));
+			SearchLimit limit = getLimit(args);
+			SudokuProblem problem = solve(sudoku, args, 
+					getCountLimit(limit, args));
 			SudokuPrinter.print(problem.getSolution());
-			int solutions = problem.getNumberOfSolutions();
-			if(solutions == 1)
-				System.out.println("\nThe Sudoku is unique.");
-			else
-				System.out.println("\nInvalid Sudoku. " + solutions + 
-						" solutions found.");
+			printSolutionCount(problem, sudoku, args, limit);
+			printStatistics(args, problem.getStatistics());
+			printWins(args);
 		}
 		else if(args[0].equals("-ss")) {
-			SudokuProblem problem = new SudokuProblem(SudokuIO.loadSudoku(args[1]));
+			int[][] sudoku = SudokuIO.loadSudoku(args[1]);
+			SearchLimit limit = getLimit(args);
+			SudokuProblem problem = solve(sudoku, args, 
+					getCountLimit(limit, args));
 			SudokuPrinter.printShort(problem.getSolution());
-			int solutions = problem.getNumberOfSolutions();
-			if(solutions == 1)
-				System.out.println("\nThe Sudoku is unique");
+			printSolutionCount(problem, sudoku, args, limit);
+			printStatistics(args, problem.getStatistics());
+			printWins(args);
+		}
+		else if(args[0].equals("-sf")) {
+			for(int[][] sudoku : loadSudokus(args))
+				solveShort(sudoku, args);
+			printWins(args);
+		}
+		else if(args[0].equals("-ls"))
+			listSolutions(SudokuIO.loadSudoku(args[1]), args);
+		else if(args[0].equals("-ms"))
+			checkMinimality(SudokuIO.loadSudoku(args[1]), args);
+		else if(args[0].equals("-mf"))
+			for(int[][] sudoku : loadSudokus(args))
+				checkMinimality(sudoku, args);
+		else if(args[0].equals("-g")) {
+			printGenerated(Generator.generatePuzzle(getBoxSize(args), 
+					getVariants(args), getSymmetry(args), getLimit(args)), 
+					false);
+			printStatistics(args, Generator.getStatistics());
+		}
+		else if(args[0].equals("-gs")) {
+			printGenerated(Generator.generatePuzzle(getBoxSize(args), 
+					getVariants(args), getSymmetry(args), getLimit(args)), 
+					true);
+			printStatistics(args, Generator.getStatistics());
+		}
+		else if(args[0].equals("-gj")) {
+			int[][] puzzle = Generator.generateJigsawPuzzle(getBoxSize(args), 
+					getLimit(args));
+			if(puzzle != null) // region map first, then the puzzle
+				SudokuPrinter.printShort(Generator.getRegions());
+			printGenerated(puzzle, true);
+			printStatistics(args, Generator.getStatistics());
+		}
+		else if(args[0].equals("-gm")) {
+			printGenerated(Generator.generateSamuraiPuzzle(getBoxSize(args), 
+					getLimit(args)), true);
+			printStatistics(args, Generator.getStatistics());
+		}
+		else if(args[0].equals("-gk")) {
+			List<Cage> cages = Generator.generateKillerPuzzle(
+					getBoxSize(args), getLimit(args));
+			if(cages == null)
+				System.out.println("Generation stopped before unique cages "
+						+ "were found.");
 			else
-				System.out.println("\nInvalid Sudoku. " + solutions + " solutions found.");
+				System.out.println(SudokuIO.getCages(cages));
+			printStatistics(args, Generator.getStatistics());
 		}
-		else if(args[0].equals("-g"))
-			SudokuPrinter.print(Generator.generatePuzzle());
-		else if(args[0].equals("-gs"))
-			SudokuPrinter.printShort(Generator.generatePuzzle());
+		else if(args[0].equals("-i"))
+			printIsomorphs(SudokuIO.loadSudoku(args[1]), args);
+		else if(args[0].equals("-lc"))
+			countLatinSquares(args);
+		else if(args[0].equals("-le"))
+			listLatinSquares(args);
 		else if(args[0].equals("-r"))
-			generateRating(SudokuIO.loadSudoku(new File(args[1])));
+			generateRating(SudokuIO.loadSudoku(new File(args[1])), args);
 		else if(args[0].equals("-rs"))
-			generateRating(SudokuIO.loadSudoku(args[1]));
+			generateRating(SudokuIO.loadSudoku(args[1]), args);
+		else if(args[0].equals("-rf"))
+			for(int[][] sudoku : loadSudokus(args))
+				rateShort(sudoku, args);
+		else if(args[0].equals("-j"))
+			runJob(args);
 		else if(args[0].equals("-tf")) {
 			Transformer transformer = new Transformer(
 					SudokuIO.loadSudoku(new File(args[1])));
@@ -99,6 +312,12 @@ public class SudokuTools {
 		} 
 		else if(args[0].equals("-t"))
 			SudokuIO.createTrainingTable(args[1]);
+		else if(args[0].equals("-fit"))
+			fitTimeModel(args);
+		else if(args[0].equals("-b"))
+			SizeBenchmark.run();
+		else if(args[0].equals("-hb"))
+			HeuristicBenchmark.run(loadSudokus(args));
 		else if(args[0].equals("-w"))
 			System.out.println("THERE IS NO WARRANTY FOR THE PROGRAM, TO THE "
 					+ "EXTENT PERMITTED BY APPLICABLE LAW. EXCEPT WHEN "
@@ -116,15 +335,563 @@ public class SudokuTools {
 					+ "of this software see enclosed license.txt");
 	}
 
-	private static void generateRating(int[][] sudoku) {
+	/**
+	 * Loads the file of Sudokus that follows the command, e.g. "-sf PATH",
+	 * or only the lines starting within the byte range given by the option
+	 * "--range START:END", e.g. the shard of a job.
+	 * @param args The command line arguments.
+	 * @return The Sudokus in the order of the file.
+	 */
+	private static List<int[][]> loadSudokus(String[] args) {
+		File source = new File(args[1]);
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals("--range")) {
+				String[] range = args[i + 1].split(":");
+				return SudokuIO.loadSudokus(source, Long.parseLong(range[0]), 
+						Long.parseLong(range[1]));
+			}
+		return SudokuIO.loadSudokus(source);
+	}
+	
+	/**
+	 * Runs the command that follows "-j" as a job of worker processes, see
+	 * {@link JobRunner}. Exits with status 1 if a shard failed after every
+	 * retry.
+	 * @param args The command line arguments.
+	 */
+	private static void runJob(String[] args) {
+		List<String> command = new ArrayList<String>();
+		for(int i = 1; i < args.length; i++)
+			if(JOB_OPTIONS.contains(args[i]))
+				i++; // skip the value, too
+			else
+				command.add(args[i]);
+		if(command.isEmpty()) {
+			System.out.println("Please provide a command, e.g. -j -sf PATH.");
+			return;
+		}
+		File input = null;
+		if(FILE_COMMANDS.contains(command.get(0)) && command.size() > 1)
+			input = new File(command.get(1));
+		String work = getJobOption(args, "--work");
+		if(work == null)
+			work = input == null ? "job.shards" : input.getPath() + ".shards";
+		JobRunner job = JobRunner.create(command, input, new File(work));
+		String workers = getJobOption(args, "--workers");
+		if(workers != null)
+			job = job.withWorkers(Integer.parseInt(workers));
+		String shards = getJobOption(args, "--shards");
+		job = job.withShards(shards != null ? Integer.parseInt(shards) 
+				: 2 * (workers != null ? Integer.parseInt(workers) 
+						: Runtime.getRuntime().availableProcessors()));
+		String retries = getJobOption(args, "--retries");
+		if(retries != null)
+			job = job.withRetries(Integer.parseInt(retries));
+		String launcher = getJobOption(args, "--launcher");
+		if(launcher != null)
+			job = job.withLauncher(Arrays.asList(launcher.trim().split("\\s+")));
+		
+		String jvmOptions = getJobOption(args, "--worker-jvm-opts");
+		if(jvmOptions != null)
+			job = job.withJvmOptions(jvmOptions.trim().isEmpty() 
+					? new ArrayList<String>() 
+					: Arrays.asList(jvmOptions.trim().split("\\s+")));
+		
+		String output = getJobOption(args, "--output");
+		boolean complete;
+		try {
+			if(output == null)
+				complete = job.run(System.out);
+			else {
+				OutputStream out = new BufferedOutputStream(
+						new FileOutputStream(output));
+				try {
+					complete = job.run(out);
+				} finally {
+					out.close();
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Job failed: " + e.getMessage());
+			complete = false;
+		} catch (InterruptedException e) {
+			complete = false;
+		}
+		if(!complete) {
+			System.err.println("Job incomplete, run it again to retry the "
+					+ "failed shards. Their errors are in " + work);
+			System.exit(1);
+		}
+	}
+	
+	private static String getJobOption(String[] args, String option) {
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals(option))
+				return args[i + 1];
+		return null;
+	}
+	
+	/**
+	 * Gets the optional box size that follows the command, e.g. "-g 4".
+	 * @param args The command line arguments.
+	 * @return The box size or 3 if none is given.
+	 */
+	private static int getBoxSize(String[] args) {
+		if(args.length > 1 && args[1].matches("[2-5]"))
+			return Integer.parseInt(args[1]);
+		return 3;
+	}
+	
+	/**
+	 * Gets the variants given by the option "--variants LIST", e.g. 
+	 * "--variants diagonal,anti-king".
+	 * @param args The command line arguments.
+	 * @return The variants or an empty set if the option is missing.
+	 */
+	private static Set<Variant> getVariants(String[] args) {
+		Set<Variant> variants = EnumSet.noneOf(Variant.class);
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals("--variants"))
+				for(String name : args[i + 1].split(","))
+					variants.add(Variant.parse(name));
+		return variants;
+	}
+	
+	/**
+	 * Gets the symmetry given by the option "--symmetry NAME", e.g.
+	 * "--symmetry rotational".
+	 * @param args The command line arguments.
+	 * @return The symmetry or {@link Symmetry#NONE} if the option is missing.
+	 */
+	private static Symmetry getSymmetry(String[] args) {
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals("--symmetry"))
+				return Symmetry.parse(args[i + 1]);
+		return Symmetry.NONE;
+	}
+	
+	/**
+	 * Solves a Sudoku with the strategy given by the options, or with 
+	 * several strategies at once if the option "--portfolio" is given.
+	 * @param sudoku The Sudoku to solve.
+	 * @param args The command line arguments.
+	 * @return The search for every solution of the Sudoku.
+	 */
+	private static SudokuProblem solve(int[][] sudoku, String[] args) {
+		return solve(sudoku, args, getLimit(args));
+	}
+	
+	private static SudokuProblem solve(int[][] sudoku, String[] args, 
+			SearchLimit limit) {
+		if(Arrays.asList(args).contains("--portfolio"))
+			return new Portfolio(sudoku, getTopology(sudoku, args), 
+					limit, Integer.MAX_VALUE, 
+					Portfolio.getDefaultStrategies(
+							Runtime.getRuntime().availableProcessors()))
+					.getResult();
+		return new SudokuProblem(sudoku, getTopology(sudoku, args), 
+				limit, Integer.MAX_VALUE, getStrategy(args));
+	}
+	
+	/**
+	 * Gets the strategy given by the options "--backjump", 
+	 * "--branching NAME", "--order NAME" and "--restarts NODES".
+	 * @param args The command line arguments.
+	 * @return The default strategy if no option is given.
+	 */
+	private static Strategy getStrategy(String[] args) {
+		Strategy strategy = Strategy.getDefault();
+		if(Arrays.asList(args).contains("--backjump"))
+			strategy = strategy.withBackjumping();
+		for(int i = 0; i < args.length - 1; i++) {
+			if(args[i].equals("--branching"))
+				strategy = strategy.withBranching(
+						Branching.parse(args[i + 1]));
+			if(args[i].equals("--order"))
+				strategy = strategy.withValueOrder(
+						ValueOrder.parse(args[i + 1]));
+			if(args[i].equals("--restarts"))
+				strategy = strategy.withRestarts(Long.parseLong(args[i + 1]));
+		}
+		return strategy;
+	}
+	
+	/**
+	 * Prints a Sudoku and its first solution in the short format, separated
+	 * by a tab. Sudokus without solution are followed by "no solution", 
+	 * those whose search was stopped by "stopped".
+	 * @param sudoku The Sudoku to solve.
+	 * @param args The command line arguments.
+	 */
+	private static void solveShort(int[][] sudoku, String[] args) {
+		SudokuProblem problem = solve(sudoku, args);
+		String result;
+		if(problem.hasSolution())
+			result = SudokuIO.getShort(problem.getSolution());
+		else
+			result = problem.isComplete() ? "no solution" : "stopped";
+		System.out.println(SudokuIO.getShort(sudoku) + "\t" + result);
+	}
+	
+	/**
+	 * Prints how often every strategy won if the option "--portfolio" is 
+	 * given.
+	 * @param args The command line arguments.
+	 */
+	private static void printWins(String[] args) {
+		if(!Arrays.asList(args).contains("--portfolio"))
+			return;
+		System.out.println();
+		System.out.println("Wins per strategy:");
+		for(Map.Entry<String, Long> wins : Portfolio.getWins().entrySet())
+			System.out.println(wins.getValue() + "\t" + wins.getKey());
+	}
+	
+	/**
+	 * Gets the topology of a Sudoku given by the options "--samurai", 
+	 * "--variants LIST", "--regions MAP" and "--cages SPEC".
+	 * @param sudoku The Sudoku to solve.
+	 * @param args The command line arguments.
+	 * @return The topology of a standard Sudoku of the Sudoku's size if no
+	 * option is given.
+	 */
+	private static Topology getTopology(int[][] sudoku, String[] args) {
+		if(Arrays.asList(args).contains("--samurai"))
+			// 3N - 2 * boxSize rows, e.g. 21 for box size 3
+			for(int boxSize = 2; boxSize <= 5; boxSize++)
+				if(3 * boxSize * boxSize - 2 * boxSize == sudoku.length)
+					return Topology.getSamurai(boxSize);
+		Topology topology = Topology.getVariant(
+				SudokuIO.getBoxSize(sudoku.length), getVariants(args));
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals("--regions"))
+				topology = Topology.getJigsaw(SudokuIO.loadSudoku(args[i + 1]));
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals("--cages"))
+				topology = topology.withCages(SudokuIO.loadCages(args[i + 1]));
+		return topology;
+	}
+	
+	/**
+	 * Prints the first solutions of a Sudoku in the short format. The count
+	 * follows the Sudoku, e.g. "-ls SHORT 5", and defaults to 2, which is
+	 * enough to compare two solutions of an ambiguous Sudoku.
+	 * @param sudoku The Sudoku to solve.
+	 * @param args The command line arguments.
+	 */
+	private static void listSolutions(int[][] sudoku, String[] args) {
+		int count = 2;
+		if(args.length > 2 && args[2].matches("[0-9]+"))
+			count = Integer.parseInt(args[2]);
+		SolutionIterator solutions = new SolutionIterator(sudoku, 
+				getTopology(sudoku, args), getLimit(args));
+		int listed = 0;
+		while(listed < count && solutions.hasNext()) {
+			SudokuPrinter.printShort(solutions.next());
+			listed++;
+		}
+		if(!solutions.isComplete())
+			System.out.println("\nSearch stopped after " + listed + 
+					" solutions.");
+		else if(listed < count)
+			System.out.println("\n" + listed + " solutions found.");
+		printStatistics(args, solutions.getStatistics());
+	}
+	
+	/**
+	 * Prints a Sudoku in the short format and whether it is minimal, e.g. 
+	 * "not minimal, redundant givens: r1c5 r9c9". Rows and columns are 
+	 * counted from 1.
+	 * @param sudoku The Sudoku to check.
+	 * @param args The command line arguments.
+	 */
+	private static void checkMinimality(int[][] sudoku, String[] args) {
+		Topology topology = getTopology(sudoku, args);
+		MinimalityCheck check = new MinimalityCheck(sudoku, topology, 
+				getLimit(args), Runtime.getRuntime().availableProcessors());
+		String result;
+		if(!check.isComplete() && !check.isUnique())
+			result = "check stopped";
+		else if(!check.hasSolution())
+			result = "no solution";
+		else if(!check.isUnique())
+			result = "not unique";
+		else if(check.isMinimal())
+			result = "minimal";
+		else {
+			result = check.getRedundantGivens().isEmpty() ? "check stopped"
+					: "not minimal, redundant givens:";
+			for(int cell : check.getRedundantGivens())
+				result += " r" + (topology.getRow(cell) + 1) 
+						+ "c" + (topology.getColumn(cell) + 1);
+		}
+		System.out.println(SudokuIO.getShort(sudoku) + "\t" + result);
+		printStatistics(args, check.getStatistics());
+	}
+	
+	/**
+	 * Prints distinct isomorphs of a Sudoku, one per line: the puzzle and 
+	 * its solution in the short format and the transformation, separated by
+	 * tabs. The count follows the Sudoku, e.g. "-i SHORT 1000".
+	 * @param sudoku The Sudoku to transform.
+	 * @param args The command line arguments.
+	 */
+	private static void printIsomorphs(int[][] sudoku, String[] args) {
+		int count = 10;
+		if(args.length > 2 && args[2].matches("[0-9]+"))
+			count = Integer.parseInt(args[2]);
+		SudokuProblem problem = new SudokuProblem(sudoku, getLimit(args), 2);
+		if(!problem.hasUniqueSolution()) {
+			System.out.println("Only Sudokus with a unique solution are "
+					+ "transformed.");
+			return;
+		}
+		byte[] puzzle = Isomorph.pack(sudoku);
+		byte[] solution = Isomorph.pack(problem.getSolution());
+		byte[] transformed = new byte[puzzle.length];
+		for(Isomorph isomorph : 
+				Isomorph.expand(sudoku, count, new Random())) {
+			isomorph.apply(puzzle, transformed);
+			String line = toShort(transformed) + "\t";
+			isomorph.apply(solution, transformed);
+			System.out.println(line + toShort(transformed) + "\t" + isomorph);
+		}
+	}
+	
+	/**
+	 * Counts the reduced and all Latin squares of the order given after 
+	 * "-lc".
+	 * @param args The command line arguments.
+	 */
+	private static void countLatinSquares(String[] args) {
+		int order = getOrder(args);
+		if(order < 0)
+			return;
+		long reduced = LatinSquareSolver.countReducedSquares(order, 
+				getLimit(args));
+		if(reduced < 0) {
+			System.out.println("Counting stopped before every Latin square "
+					+ "was found.");
+			return;
+		}
+		System.out.println(reduced + " reduced Latin squares");
+		System.out.println(LatinSquareSolver.getSquareCount(order, reduced) 
+				+ " Latin squares");
+	}
+	
+	/**
+	 * Prints the reduced Latin squares of the order given after "-le", one
+	 * per line in the short format with symbols from 1 to the order. The 
+	 * squares are written as they are found, in no particular order.
+	 * @param args The command line arguments.
+	 */
+	private static void listLatinSquares(String[] args) {
+		int order = getOrder(args);
+		if(order < 0)
+			return;
+		final PrintWriter writer = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(System.out)));
+		boolean complete = LatinSquareSolver.enumerateReducedSquares(order, 
+				new Consumer<int[][]>() {
+					@Override
+					public void accept(int[][] square) {
+						char[] symbols = new char[square.length 
+								* square.length + 1];
+						for(int row = 0; row < square.length; row++)
+							for(int col = 0; col < square.length; col++)
+								symbols[row * square.length + col] = 
+										SudokuIO.toSymbol(square[row][col] + 1);
+						symbols[symbols.length - 1] = '\n';
+						synchronized(writer) {
+							writer.write(symbols);
+						}
+					}
+				}, getLimit(args));
+		writer.flush();
+		if(!complete)
+			System.out.println("Listing stopped before every Latin square "
+					+ "was found.");
+	}
+	
+	/**
+	 * Gets the order of Latin squares that follows the command, e.g. 
+	 * "-lc 6".
+	 * @param args The command line arguments.
+	 * @return The order or -1 if none is given.
+	 */
+	private static int getOrder(String[] args) {
+		if(args.length > 1 && args[1].matches("[1-9]"))
+			return Integer.parseInt(args[1]);
+		System.out.println("Please provide an order from 1 to 9.");
+		return -1;
+	}
+	
+	private static String toShort(byte[] packed) {
+		char[] symbols = new char[packed.length];
+		for(int i = 0; i < packed.length; i++)
+			symbols[i] = SudokuIO.toSymbol(packed[i]);
+		return new String(symbols);
+	}
+	
+	/**
+	 * Fits the solve time estimate to the training table given after "-fit"
+	 * and writes the coefficients to the file given by the option 
+	 * "--model PATH", by default time-model.txt, which the rater reads at
+	 * startup.
+	 * @param args The command line arguments.
+	 */
+	private static void fitTimeModel(String[] args) {
+		double trim = 3;
+		if(args.length > 2 && args[2].matches("[0-9.]+"))
+			trim = Double.parseDouble(args[2]);
+		File target = new File("time-model.txt");
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals("--model"))
+				target = new File(args[i + 1]);
+		try {
+			TimeModel model = TimeModel.fit(new File(args[1]), trim);
+			model.save(target);
+			System.out.println(model);
+			System.out.println("Coefficients written to " + target);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("Fitting failed: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Creates the search limit given by the option "--timeout MILLIS".
+	 * @param args The command line arguments.
+	 * @return A limit with the given time budget or an unlimited search limit
+	 * if the option is missing.
+	 */
+	private static SearchLimit getLimit(String[] args) {
+		long timeout = getTimeout(args);
+		return timeout < 0 ? new SearchLimit() : new SearchLimit(timeout);
+	}
+	
+	/**
+	 * Gets the limit for counting the solutions of a Sudoku within a 
+	 * command's limit. Counting gets half of the time budget, so the 
+	 * estimate of solutions that are too many to count gets the rest.
+	 * @param limit The limit of the command.
+	 * @param args The command line arguments.
+	 * @return The command's limit if the option "--timeout" is missing.
+	 */
+	private static SearchLimit getCountLimit(SearchLimit limit, 
+			String[] args) {
+		long timeout = getTimeout(args);
+		return timeout < 0 ? limit : new SearchLimit(limit, timeout / 2);
+	}
+	
+	// the time budget of the option "--timeout MILLIS" or -1 if it's missing
+	private static long getTimeout(String[] args) {
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals("--timeout"))
+				return Long.parseLong(args[i + 1]);
+		return -1;
+	}
+	
+	/**
+	 * Starts reporting metrics if the option "--metrics PATH" is given. The
+	 * metrics are dumped every ten seconds and when the program ends.
+	 * @param args The command line arguments.
+	 */
+	private static void startMetrics(String[] args) {
+		for(int i = 0; i < args.length - 1; i++)
+			if(args[i].equals("--metrics"))
+				Metrics.startReporting(new File(args[i + 1]), 10000);
+	}
+	
+	private static void printSolutionCount(SudokuProblem problem, 
+			int[][] sudoku, String[] args, SearchLimit limit) {
+		int solutions = problem.getNumberOfSolutions();
+		if(!problem.isComplete()) {
+			System.out.println("\nSearch stopped. At least " + solutions + 
+					" solutions found.");
+			// too many solutions to count, so estimate them instead within
+			// the rest of the command's time budget
+			SolutionEstimator estimator = new SolutionEstimator(sudoku, 
+					getTopology(sudoku, args), limit, ESTIMATE_SAMPLES);
+			if(estimator.getEstimate() > solutions)
+				System.out.println("Estimated " + estimator + ".");
+		}
+		else if(solutions == 1)
+			System.out.println("\nThe Sudoku is unique.");
+		else
+			System.out.println("\nInvalid Sudoku. " + solutions + 
+					" solutions found.");
+	}
+	
+	private static void printGenerated(int[][] puzzle, boolean compact) {
+		if(puzzle == null)
+			System.out.println("Generation stopped before a unique puzzle "
+					+ "was found.");
+		else if(compact)
+			SudokuPrinter.printShort(puzzle);
+		else
+			SudokuPrinter.print(puzzle);
+	}
+
+	/**
+	 * Prints the statistics of a search if the option "--stats" is given.
+	 * @param args The command line arguments.
+	 * @param statistics The statistics of the search.
+	 */
+	private static void printStatistics(String[] args, 
+			SearchStatistics statistics) {
+		for(String arg : args)
+			if(arg.equals("--stats")) {
+				System.out.println();
+				System.out.println(statistics);
+				return;
+			}
+	}
+
+	/**
+	 * Rates a Sudoku and prints it in the short format with the difficulty 
+	 * of advanced techniques, the hidden/naked singles per step and the
+	 * estimated minutes to solve it, separated by tabs, or "no solution" 
+	 * respectively "stopped".
+	 * @param sudoku The Sudoku to rate.
+	 * @param args The command line arguments.
+	 */
+	private static void rateShort(int[][] sudoku, String[] args) {
+		Rater rater = new Rater(sudoku, getLimit(args));
+		String result;
+		if(!rater.hasSolution())
+			result = "no solution";
+		else if(rater.getRunsCompleted() == 0)
+			result = "stopped";
+		else
+			result = rater.getRefutationSum() + "\t" 
+					+ rater.getDependencyMetric() + "\t" 
+					+ rater.getEstimatedTime();
+		System.out.println(SudokuIO.getShort(sudoku) + "\t" + result);
+	}
+	
+	private static void generateRating(int[][] sudoku, String[] args) {
 		System.out.println("Calculating rating...");
-		Rater r = new Rater(sudoku);
-		System.out.println("Rating terminated.");
+		Rater r = new Rater(sudoku, getLimit(args));
+		if(!r.hasSolution()) {
+			System.out.println("The Sudoku has no solution.");
+			return;
+		}
+		if(r.getRunsCompleted() == 0) {
+			System.out.println("Rating stopped before the first run was "
+					+ "finished.");
+			return;
+		}
+		if(r.isComplete())
+			System.out.println("Rating terminated.");
+		else
+			System.out.println("Rating incomplete after " + 
+					r.getRunsCompleted() + " runs.");
 		System.out.println("---------------------");
 		System.out.println("Difficulty of advanced" +
 				" techniques: " + r.getRefutationSum());
 		System.out.println("Average number of hidden/naked" +
 				" singles per step: " + r.getDependencyMetric());
 		System.out.println("Estimated time to solve: " + r.getEstimatedTime() + "min");
+		printStatistics(args, r.getStatistics());
 	}
 }
@@ -0,0 +1,287 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a command of SudokuTools on shards of a file of Sudokus, each in a
+ * worker process, and merges the outputs of the workers in the order of 
+ * the file. The file is split into byte ranges of equal length, which the
+ * workers read with the option "--range START:END", so every worker only 
+ * loads its own lines. Commands without an input file, e.g. generating, 
+ * are run once per shard.
+ * <p>
+ * The outputs and completion markers of the shards are kept in a work 
+ * directory: the marker of a shard is written after its worker exited 
+ * normally and holds the command line of the worker, which includes the 
+ * range of the shard, and the length and modification time of the file. 
+ * A failed worker is retried, and running the same job again skips the 
+ * shards whose markers match, so an interrupted job resumes where it 
+ * stopped. The markers of a job without a file are removed when the job
+ * is done, since running it again is meant to produce new output. 
+ * <p>
+ * Workers are started with the JVM, class path and JVM options of the 
+ * runner, leaving out options that several processes can't share like 
+ * debugging agents or flight recordings, or with JVM options given 
+ * explicitly. They may run behind a launcher like "ssh node1" that runs 
+ * them on other machines with the same paths on a shared file system.
+ * @author robert
+ *
+ */
+public final class JobRunner {
+
+	// JVM options of the runner that aren't passed on to the workers: the
+	// workers would bind the same debugger port or write the same file
+	private static final String[] EXCLUSIVE_OPTIONS = {"-agentlib:", 
+		"-agentpath:", "-javaagent:", "-Xdebug", "-Xrunjdwp", "-Xloggc:", 
+		"-Xlog:", "-XX:StartFlightRecording", "-XX:FlightRecorderOptions"};
+
+	private final List<String> command;
+	private final File input;
+	private final File workDirectory;
+	private final int shards;
+	private final int workers;
+	private final int retries;
+	private final List<String> launcher;
+	private final List<String> jvmOptions;
+	
+	private JobRunner(List<String> command, File input, File workDirectory, 
+			int shards, int workers, int retries, List<String> launcher, 
+			List<String> jvmOptions) {
+		this.command = command;
+		this.input = input;
+		this.workDirectory = workDirectory;
+		this.shards = shards;
+		this.workers = workers;
+		this.retries = retries;
+		this.launcher = launcher;
+		this.jvmOptions = jvmOptions;
+	}
+	
+	/**
+	 * Creates a job with one worker per processor, twice as many shards and
+	 * two retries per shard. The workers get the JVM options of the runner
+	 * except for debugging agents, flight recordings and log files.
+	 * @param command The arguments of SudokuTools for every worker, e.g. 
+	 * "-sf", "puzzles.txt", "--timeout", "1000".
+	 * @param input The file of Sudokus to split or {@code null} to run the
+	 * command once per shard.
+	 * @param workDirectory Keeps the outputs and markers of the shards.
+	 * @return The job.
+	 */
+	public static JobRunner create(List<String> command, File input, 
+			File workDirectory) {
+		int processors = Runtime.getRuntime().availableProcessors();
+		List<String> jvmOptions = new ArrayList<String>();
+		for(String option : 
+				ManagementFactory.getRuntimeMXBean().getInputArguments())
+			if(isShared(option))
+				jvmOptions.add(option);
+		return new JobRunner(new ArrayList<String>(command), input, 
+				workDirectory, 2 * processors, processors, 2, 
+				Collections.<String>emptyList(), jvmOptions);
+	}
+	
+	public JobRunner withShards(int shards) {
+		if(shards < 1)
+			throw new IllegalArgumentException("A job needs a shard.");
+		return new JobRunner(command, input, workDirectory, shards, workers,
+				retries, launcher, jvmOptions);
+	}
+	
+	public JobRunner withWorkers(int workers) {
+		if(workers < 1)
+			throw new IllegalArgumentException("A job needs a worker.");
+		return new JobRunner(command, input, workDirectory, shards, workers,
+				retries, launcher, jvmOptions);
+	}
+	
+	public JobRunner withRetries(int retries) {
+		return new JobRunner(command, input, workDirectory, shards, workers,
+				Math.max(retries, 0), launcher, jvmOptions);
+	}
+	
+	/**
+	 * Starts every worker behind a launcher, e.g. "ssh", "node1".
+	 * @param launcher The words of the launcher, which get the command of 
+	 * the worker appended.
+	 * @return A copy of this job with the launcher.
+	 */
+	public JobRunner withLauncher(List<String> launcher) {
+		return new JobRunner(command, input, workDirectory, shards, workers,
+				retries, new ArrayList<String>(launcher), jvmOptions);
+	}
+	
+	/**
+	 * Starts every worker with the given JVM options instead of those of 
+	 * the runner.
+	 * @param jvmOptions The JVM options, e.g. "-Xmx2g".
+	 * @return A copy of this job with the JVM options.
+	 */
+	public JobRunner withJvmOptions(List<String> jvmOptions) {
+		return new JobRunner(command, input, workDirectory, shards, workers,
+				retries, launcher, new ArrayList<String>(jvmOptions));
+	}
+	
+	/**
+	 * Runs the shards that are not marked done, with as many workers at a
+	 * time as given, and merges the outputs if every shard is done.
+	 * @param output Receives the outputs of the shards in order. It is 
+	 * flushed but not closed.
+	 * @return {@code true} if every shard is done, {@code false} if a shard
+	 * failed after every retry, in which case nothing is merged.
+	 * @throws IOException If the work directory or the output fail.
+	 * @throws InterruptedException If the runner is interrupted while it 
+	 * waits for the workers, which are stopped then.
+	 */
+	public boolean run(OutputStream output) 
+			throws IOException, InterruptedException {
+		if(!workDirectory.isDirectory() && !workDirectory.mkdirs())
+			throw new IOException("Could not create " + workDirectory);
+		long length = input == null ? 0 : input.length();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for(int shard = 0; shard < shards; shard++) {
+				final int index = shard;
+				// the shards split the file at any byte, see 
+				// SudokuIO.loadSudokus(File, long, long)
+				final String range = input == null ? "" : 
+					length * shard / shards + ":" 
+						+ length * (shard + 1) / shards;
+				results.add(pool.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						return runShard(index, range);
+					}
+				}));
+			}
+			boolean complete = true;
+			for(Future<Boolean> result : results)
+				complete &= result.get();
+			if(!complete)
+				return false;
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow(); // interrupts and stops running workers
+		}
+		for(int shard = 0; shard < shards; shard++)
+			Files.copy(getFile(shard, "out").toPath(), output);
+		output.flush();
+		if(input == null) // e.g. generated puzzles aren't reused
+			for(int shard = 0; shard < shards; shard++)
+				Files.delete(getFile(shard, "done").toPath());
+		return true;
+	}
+	
+	// runs a shard until its worker succeeds or no retry is left
+	private boolean runShard(int shard, String range) 
+			throws IOException, InterruptedException {
+		File marker = getFile(shard, "done");
+		File output = getFile(shard, "out");
+		List<String> commandLine = getWorker(range);
+		String done = getMarker(commandLine);
+		if(marker.exists() && output.exists() && done.equals(
+				new String(Files.readAllBytes(marker.toPath()), 
+						StandardCharsets.UTF_8)))
+			return true;
+		Files.deleteIfExists(marker.toPath());
+		File partial = getFile(shard, "part");
+		for(int attempt = 0; attempt <= retries; attempt++) {
+			ProcessBuilder builder = new ProcessBuilder(commandLine);
+			builder.redirectOutput(partial);
+			builder.redirectError(
+					ProcessBuilder.Redirect.appendTo(getFile(shard, "err")));
+			Process worker = builder.start();
+			int exitCode;
+			try {
+				exitCode = worker.waitFor();
+			} catch (InterruptedException e) {
+				worker.destroyForcibly();
+				throw e;
+			}
+			if(exitCode == 0) {
+				Files.move(partial.toPath(), output.toPath(), 
+						StandardCopyOption.REPLACE_EXISTING);
+				Files.write(marker.toPath(), 
+						done.getBytes(StandardCharsets.UTF_8));
+				return true;
+			}
+			System.err.println("Shard " + shard + " failed with exit code " 
+					+ exitCode + (attempt < retries ? ", retrying." : "."));
+		}
+		return false;
+	}
+	
+	private List<String> getWorker(String range) {
+		List<String> worker = new ArrayList<String>(launcher);
+		worker.add(new File(new File(System.getProperty("java.home"), "bin"), 
+				"java").getPath());
+		worker.addAll(jvmOptions);
+		worker.add("-cp");
+		worker.add(System.getProperty("java.class.path"));
+		worker.add("SudokuTools");
+		worker.addAll(command);
+		if(!range.isEmpty()) {
+			worker.add("--range");
+			worker.add(range);
+		}
+		return worker;
+	}
+	
+	private static boolean isShared(String option) {
+		for(String exclusive : EXCLUSIVE_OPTIONS)
+			if(option.startsWith(exclusive))
+				return false;
+		return true;
+	}
+	
+	// the command line of the worker, one word per line, followed by the
+	// length and modification time of the file, which changes if either does
+	private String getMarker(List<String> worker) {
+		StringBuilder marker = new StringBuilder();
+		for(String word : worker)
+			marker.append(word).append('\n');
+		if(input != null)
+			marker.append(input.length()).append(' ')
+					.append(input.lastModified()).append('\n');
+		return marker.toString();
+	}
+	
+	// e.g. shard-0003.out in the work directory
+	private File getFile(int shard, String extension) {
+		return new File(workDirectory, 
+				String.format("shard-%04d.%s", shard, extension));
+	}
+}
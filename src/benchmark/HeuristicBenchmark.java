@@ -0,0 +1,129 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+
+import solver.Branching;
+import solver.SearchLimit;
+import solver.Strategy;
+import solver.SudokuProblem;
+import solver.ValueOrder;
+import topology.Topology;
+import utile.SudokuIO;
+
+/**
+ * Compares the branching heuristics and value orders of the solver on a 
+ * corpus of puzzles. Every combination checks every puzzle for uniqueness,
+ * as the generator does, and the distributions of the visited nodes and of
+ * the time per puzzle are printed as one table row per combination. Use it
+ * to choose the default strategy for a mix of puzzles.
+ * @author robert
+ *
+ */
+public class HeuristicBenchmark {
+
+	private static final int WARM_UP = 3;
+	// time in milliseconds a single search may take
+	private static final long TIME_BUDGET = 10000;
+	
+	/**
+	 * Runs every combination of branching heuristic and value order on the
+	 * provided puzzles and prints the mean, median, 90th and 99th 
+	 * percentile and maximum of the nodes and the time in milliseconds per
+	 * puzzle.
+	 * @param puzzles Standard Sudoku puzzles of any size.
+	 */
+	public static void run(List<int[][]> puzzles) {
+		System.out.println("branching\torder\tpuzzles\tnodes mean\tnodes p50"
+				+ "\tnodes p90\tnodes p99\tnodes max\ttime mean(ms)"
+				+ "\ttime p50(ms)\ttime p90(ms)\ttime p99(ms)\ttime max(ms)"
+				+ "\ttimeouts");
+		// let the JIT compile every heuristic before measuring
+		for(int i = 0; i < WARM_UP; i++)
+			for(Branching branching : Branching.values())
+				for(ValueOrder order : ValueOrder.values())
+					measure(puzzles, Strategy.getDefault()
+							.withBranching(branching).withValueOrder(order), 
+							new long[puzzles.size()], 
+							new long[puzzles.size()]);
+		for(Branching branching : Branching.values())
+			for(ValueOrder order : ValueOrder.values()) {
+				long[] nodes = new long[puzzles.size()];
+				long[] times = new long[puzzles.size()];
+				int timeouts = measure(puzzles, Strategy.getDefault()
+						.withBranching(branching).withValueOrder(order), 
+						nodes, times);
+				Arrays.sort(nodes);
+				Arrays.sort(times);
+				System.out.println(branching.name().toLowerCase() 
+						+ "\t" + order.name().toLowerCase()
+						+ "\t" + puzzles.size()
+						+ "\t" + mean(nodes)
+						+ "\t" + percentile(nodes, 50)
+						+ "\t" + percentile(nodes, 90)
+						+ "\t" + percentile(nodes, 99)
+						+ "\t" + percentile(nodes, 100)
+						+ "\t" + format(mean(times))
+						+ "\t" + format(percentile(times, 50))
+						+ "\t" + format(percentile(times, 90))
+						+ "\t" + format(percentile(times, 99))
+						+ "\t" + format(percentile(times, 100))
+						+ "\t" + timeouts);
+			}
+	}
+	
+	// checks every puzzle with the strategy and returns the timeouts
+	private static int measure(List<int[][]> puzzles, Strategy strategy, 
+			long[] nodes, long[] times) {
+		int timeouts = 0;
+		for(int i = 0; i < puzzles.size(); i++) {
+			int[][] puzzle = puzzles.get(i);
+			Topology topology = Topology.getClassic(
+					SudokuIO.getBoxSize(puzzle.length));
+			long start = System.nanoTime();
+			SudokuProblem problem = new SudokuProblem(puzzle, topology, 
+					new SearchLimit(TIME_BUDGET), 2, strategy);
+			times[i] = System.nanoTime() - start;
+			nodes[i] = problem.getStatistics().getNodes();
+			if(!problem.isComplete() && problem.getNumberOfSolutions() < 2)
+				timeouts++;
+		}
+		return timeouts;
+	}
+	
+	private static long mean(long[] values) {
+		long sum = 0;
+		for(long value : values)
+			sum += value;
+		return values.length == 0 ? 0 : sum / values.length;
+	}
+	
+	// nearest rank percentile of sorted values
+	private static long percentile(long[] sorted, int percent) {
+		if(sorted.length == 0)
+			return 0;
+		int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+		return sorted[Math.max(rank, 1) - 1];
+	}
+	
+	private static String format(long nanos) {
+		return String.format("%.3f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,130 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import generator.Generator;
+import solver.SearchLimit;
+import solver.Solver;
+import solver.SudokuProblem;
+
+/**
+ * Measures how long the solver takes for grids of different box sizes. For
+ * every box size a number of random full grids is generated, about half of
+ * the cells are cleared and the resulting puzzles are solved once for the 
+ * first solution and once to check for uniqueness.
+ * @author robert
+ *
+ */
+public class SizeBenchmark {
+
+	private static final int SAMPLES = 20;
+	private static final int WARM_UP = 200;
+	// share of cells that stay filled, as 40 of 81 cells of a standard grid
+	private static final double GIVEN_SHARE = 40.0 / 81.0;
+	// time in milliseconds a single search may take
+	private static final long TIME_BUDGET = 10000;
+	
+	public static void main(String[] args) {
+		run();
+	}
+	
+	/**
+	 * Runs the benchmark for box sizes 2 to 5 and prints a table with the
+	 * median and maximum time and the average number of visited nodes.
+	 */
+	public static void run() {
+		System.out.println("grid\tsamples\tsolve p50(ms)\tsolve max(ms)"
+				+ "\tsolve nodes\tunique p50(ms)\tunique max(ms)"
+				+ "\tunique nodes\ttimeouts");
+		Random random = new Random();
+		// let the JIT compile the solver before measuring
+		for(int i = 0; i < WARM_UP; i++)
+			new SudokuProblem(createPuzzle(3, random), new SearchLimit(), 2);
+		for(int boxSize = 2; boxSize <= 5; boxSize++) {
+			int size = boxSize * boxSize;
+			long[] solveTimes = new long[SAMPLES];
+			long[] uniqueTimes = new long[SAMPLES];
+			long solveNodes = 0;
+			long uniqueNodes = 0;
+			int timeouts = 0;
+			for(int sample = 0; sample < SAMPLES; sample++) {
+				int[][] puzzle = createPuzzle(boxSize, random);
+				
+				long start = System.nanoTime();
+				Solver.findSolution(copy(puzzle), new SearchLimit(TIME_BUDGET));
+				solveTimes[sample] = System.nanoTime() - start;
+				solveNodes += Solver.getStatistics().getNodes();
+				if(!Solver.isComplete())
+					timeouts++;
+				
+				start = System.nanoTime();
+				SudokuProblem problem = new SudokuProblem(puzzle, 
+						new SearchLimit(TIME_BUDGET), 2);
+				uniqueTimes[sample] = System.nanoTime() - start;
+				uniqueNodes += problem.getStatistics().getNodes();
+				if(!problem.isComplete() && problem.getNumberOfSolutions() < 2)
+					timeouts++;
+			}
+			System.out.println(size + "x" + size + "\t" + SAMPLES 
+					+ "\t" + format(median(solveTimes))
+					+ "\t" + format(max(solveTimes))
+					+ "\t" + solveNodes / SAMPLES
+					+ "\t" + format(median(uniqueTimes))
+					+ "\t" + format(max(uniqueTimes))
+					+ "\t" + uniqueNodes / SAMPLES
+					+ "\t" + timeouts);
+		}
+	}
+	
+	private static int[][] createPuzzle(int boxSize, Random random) {
+		int[][] puzzle = Generator.generateSolution(boxSize, new SearchLimit());
+		int size = puzzle.length;
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				if(random.nextDouble() > GIVEN_SHARE)
+					puzzle[row][col] = 0;
+		return puzzle;
+	}
+	
+	private static int[][] copy(int[][] grid) {
+		int[][] copy = new int[grid.length][];
+		for(int row = 0; row < grid.length; row++)
+			copy[row] = grid[row].clone();
+		return copy;
+	}
+	
+	private static long median(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+	
+	private static long max(long[] times) {
+		long max = 0;
+		for(long time : times)
+			max = Math.max(max, time);
+		return max;
+	}
+	
+	private static String format(long nanos) {
+		return String.format("%.3f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,192 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import topology.Cage;
+
+/**
+ * Divides a solved Sudoku into random cages for a killer Sudoku. Every cage
+ * is connected and contains different values. Its sum is taken from the
+ * solved Sudoku.
+ * @author robert
+ *
+ */
+public class CageGenerator {
+	
+	private static final int MAX_CAGE_SIZE = 5;
+	
+	private static final int[][] DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+	
+	/**
+	 * Creates random cages that cover the solved Sudoku.
+	 * @param solution A solved N x N Sudoku.
+	 * @param random The source of randomness.
+	 * @return Cages of one to {@link CageGenerator#MAX_CAGE_SIZE} cells that
+	 * cover every cell once. Cages of one cell only occur if no neighboring 
+	 * cage can take the cell.
+	 */
+	public static List<Cage> createCages(int[][] solution, Random random) {
+		int size = solution.length;
+		int[][] cageOf = new int[size][size];
+		for(int[] row : cageOf)
+			Arrays.fill(row, -1);
+		List<List<Integer>> cages = new ArrayList<List<Integer>>();
+		
+		List<Integer> order = new ArrayList<Integer>(size * size);
+		for(int cell = 0; cell < size * size; cell++)
+			order.add(cell);
+		Collections.shuffle(order, random);
+		for(int start : order) {
+			if(cageOf[start / size][start % size] >= 0)
+				continue;
+			List<Integer> cage = new ArrayList<Integer>();
+			int target = 2 + random.nextInt(MAX_CAGE_SIZE - 1);
+			int cell = start;
+			while(cell >= 0) {
+				cage.add(cell);
+				cageOf[cell / size][cell % size] = cages.size();
+				cell = cage.size() < target 
+						? pickNeighbor(solution, cageOf, cage, random) : -1;
+			}
+			cages.add(cage);
+		}
+		mergeSingleCells(solution, cageOf, cages, random);
+		
+		List<Cage> result = new ArrayList<Cage>();
+		for(List<Integer> cage : cages)
+			if(!cage.isEmpty())
+				result.add(toCage(solution, cage));
+		return result;
+	}
+	
+	// picks a random cell without cage touching the cage that has a value
+	// the cage doesn't contain yet. Returns -1 if there is no such cell.
+	private static int pickNeighbor(int[][] solution, int[][] cageOf, 
+			List<Integer> cage, Random random) {
+		int size = solution.length;
+		int picked = -1;
+		int candidates = 0;
+		for(int cell : cage)
+			for(int[] direction : DIRECTIONS) {
+				int row = cell / size + direction[0];
+				int col = cell % size + direction[1];
+				if(row < 0 || row >= size || col < 0 || col >= size 
+						|| cageOf[row][col] >= 0
+						|| contains(solution, cage, solution[row][col]))
+					continue;
+				// reservoir sampling of the candidates
+				if(random.nextInt(++candidates) == 0)
+					picked = row * size + col;
+			}
+		return picked;
+	}
+	
+	private static boolean contains(int[][] solution, List<Integer> cage, 
+			int value) {
+		int size = solution.length;
+		for(int cell : cage)
+			if(solution[cell / size][cell % size] == value)
+				return true;
+		return false;
+	}
+	
+	// moves cages of a single cell into a touching cage that has room for it
+	private static void mergeSingleCells(int[][] solution, int[][] cageOf, 
+			List<List<Integer>> cages, Random random) {
+		int size = solution.length;
+		for(int index = 0; index < cages.size(); index++) {
+			List<Integer> single = cages.get(index);
+			if(single.size() != 1)
+				continue;
+			int cell = single.get(0);
+			for(int[] direction : DIRECTIONS) {
+				int row = cell / size + direction[0];
+				int col = cell % size + direction[1];
+				if(row < 0 || row >= size || col < 0 || col >= size)
+					continue;
+				List<Integer> other = cages.get(cageOf[row][col]);
+				if(other != single && other.size() < MAX_CAGE_SIZE
+						&& !contains(solution, other, solution[cell / size]
+								[cell % size])) {
+					other.add(cell);
+					cageOf[cell / size][cell % size] = cageOf[row][col];
+					single.clear();
+					break;
+				}
+			}
+		}
+	}
+	
+	private static Cage toCage(int[][] solution, List<Integer> cells) {
+		int size = solution.length;
+		int[] indices = new int[cells.size()];
+		int sum = 0;
+		for(int i = 0; i < indices.length; i++) {
+			indices[i] = cells.get(i);
+			sum += solution[indices[i] / size][indices[i] % size];
+		}
+		return new Cage(indices, sum);
+	}
+	
+	/**
+	 * Splits a cage so that a cell gets a cage of its own. The remaining 
+	 * cells of the cage form one cage per connected part.
+	 * @param solution The solved Sudoku the cages were created for.
+	 * @param cages The cages, which are changed.
+	 * @param cell The index of the cell that gets a cage of its own.
+	 */
+	public static void splitCage(int[][] solution, List<Cage> cages, 
+			int cell) {
+		int size = solution.length;
+		for(int index = 0; index < cages.size(); index++) {
+			List<Integer> rest = new ArrayList<Integer>();
+			boolean found = false;
+			for(int other : cages.get(index).getCells())
+				if(other == cell)
+					found = true;
+				else
+					rest.add(other);
+			if(!found || rest.isEmpty())
+				continue;
+			
+			cages.remove(index);
+			cages.add(toCage(solution, Collections.singletonList(cell)));
+			// collect the connected parts of the remaining cells
+			while(!rest.isEmpty()) {
+				List<Integer> part = new ArrayList<Integer>();
+				part.add(rest.remove(0));
+				for(int i = 0; i < part.size(); i++)
+					for(int j = rest.size() - 1; j >= 0; j--) {
+						int a = part.get(i);
+						int b = rest.get(j);
+						if(Math.abs(a / size - b / size) 
+								+ Math.abs(a % size - b % size) == 1)
+							part.add(rest.remove(j));
+					}
+				cages.add(toCage(solution, part));
+			}
+			return;
+		}
+	}
+}
@@ -17,10 +17,26 @@
 
 package generator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.Stack;
 
+import monitoring.GenerationEvent;
+import monitoring.Metrics;
+import solver.SearchLimit;
+import solver.SearchStatistics;
+import solver.SolutionIterator;
+import solver.Solver;
 import solver.SudokuProblem;
+import topology.Cage;
+import topology.Topology;
+import topology.Variant;
+import utile.SudokuIO;
 
 /**
  * This class provides functionality to generate Sudoku problems.
@@ -29,70 +45,600 @@ import solver.SudokuProblem;
  */
 public class Generator {
 	
+	// Completing a region layout may take very long for some layouts, so
+	// the first layout gets this many milliseconds before another one is 
+	// tried. The budget doubles with every layout.
+	private static final long LAYOUT_BUDGET = 5;
+	
+	// the same for the uniqueness checks of killer cages
+	private static final long CAGE_BUDGET = 50;
+	
+	// the same for the uniqueness checks of the givens, an instance whose 
+	// check exceeds its budget gets more givens
+	private static final long GIVEN_BUDGET = 50;
+	
+	// the same for the checks of the minimization, a given whose check 
+	// exceeds it is kept
+	private static final long REMOVAL_BUDGET = 500;
+	
+	
+	private static int boxSize = 3;
+	private static int size = 9;
+	private static Topology topology = Topology.getClassic(3);
+	private static Set<Variant> variants = EnumSet.noneOf(Variant.class);
+	// the region map of a jigsaw Sudoku, null for Sudokus with blocks
+	private static int[][] regions;
+	private static boolean samurai = false;
 	private static int[][] solution = new int[9][9];
 	private static int[][] instance = new int[9][9];
-	private static Stack<Position> givenPositions = new Stack<Position>();
+	private static Symmetry symmetry = Symmetry.NONE;
+	// the givens in the order they were placed, grouped by orbit
+	private static Stack<List<Position>> givenOrbits = 
+			new Stack<List<Position>>();
+	private static SearchStatistics statistics = new SearchStatistics();
 	
 	public static int[][] generatePuzzle() {
-		generateSolution();
-		placeValues(40);
-		SudokuProblem problem = new SudokuProblem(instance);
-		while(!problem.hasUniqueSolution()) {
-			instance = new int[9][9];
-			placeValues(40);
-			problem = new SudokuProblem(instance);
+		return generatePuzzle(new SearchLimit());
+	}
+	
+	/**
+	 * Generates a 9x9 Sudoku problem with a unique solution and stops as soon
+	 * as the provided limit is exhausted. See 
+	 * {@link Generator#generatePuzzle(int, SearchLimit)}.
+	 * @param limit Cancels the generation or restricts its time budget.
+	 * @return A 9x9 Sudoku problem or {@code null} if the limit was exhausted
+	 * before a unique puzzle could be found.
+	 */
+	public static int[][] generatePuzzle(SearchLimit limit) {
+		return generatePuzzle(3, limit);
+	}
+	
+	/**
+	 * Generates a Sudoku problem with a unique solution and stops as soon as
+	 * the provided limit is exhausted. If the limit is exhausted while givens
+	 * are removed, the puzzle is still unique but may contain more givens 
+	 * than necessary. The same holds for givens whose removal takes too long
+	 * to check, which happens in 25x25 grids.
+	 * @param boxSize The number of rows of a box, from 2 to 5. The puzzle has
+	 * the square of the box size as number of rows, e.g. 16 for box size 4.
+	 * @param limit Cancels the generation or restricts its time budget.
+	 * @return A Sudoku problem or {@code null} if the limit was exhausted
+	 * before a unique puzzle could be found.
+	 */
+	public static int[][] generatePuzzle(int boxSize, SearchLimit limit) {
+		return generatePuzzle(boxSize, EnumSet.noneOf(Variant.class), limit);
+	}
+	
+	/**
+	 * Generates a Sudoku problem of a variant with a unique solution, see
+	 * {@link Generator#generatePuzzle(int, SearchLimit)}.
+	 * @param boxSize The number of rows of a box, from 2 to 5.
+	 * @param variants The constraints the puzzle is subject to in addition
+	 * to rows, columns and blocks.
+	 * @param limit Cancels the generation or restricts its time budget.
+	 * @return A Sudoku problem or {@code null} if the limit was exhausted
+	 * before a unique puzzle could be found or the variants allow no 
+	 * solution for the box size.
+	 */
+	public static int[][] generatePuzzle(int boxSize, Set<Variant> variants,
+			SearchLimit limit) {
+		return generatePuzzle(boxSize, variants, Symmetry.NONE, limit);
+	}
+	
+	/**
+	 * Generates a Sudoku problem of a variant with a unique solution whose
+	 * givens form a symmetric pattern, see 
+	 * {@link Generator#generatePuzzle(int, SearchLimit)}. Givens are placed 
+	 * and removed in symmetric pairs, so the puzzle is minimal among the 
+	 * symmetric puzzles but may have givens that could be removed one by 
+	 * one.
+	 * @param boxSize The number of rows of a box, from 2 to 5.
+	 * @param variants The constraints the puzzle is subject to in addition
+	 * to rows, columns and blocks.
+	 * @param symmetry The symmetry of the givens.
+	 * @param limit Cancels the generation or restricts its time budget.
+	 * @return A Sudoku problem or {@code null} if the limit was exhausted
+	 * before a unique puzzle could be found or the variants allow no 
+	 * solution for the box size.
+	 */
+	public static int[][] generatePuzzle(int boxSize, Set<Variant> variants,
+			Symmetry symmetry, SearchLimit limit) {
+		long start = System.nanoTime();
+		statistics = new SearchStatistics();
+		Generator.boxSize = boxSize;
+		size = boxSize * boxSize;
+		Generator.variants = variants;
+		Generator.symmetry = symmetry;
+		regions = null;
+		samurai = false;
+		topology = Topology.getVariant(boxSize, variants);
+		solution = new int[size][size];
+		return generate(start, limit);
+	}
+	
+	/**
+	 * Generates a jigsaw Sudoku problem with a random region layout and a
+	 * unique solution, see {@link Generator#generatePuzzle(int, SearchLimit)}.
+	 * The region map of the puzzle can be obtained via 
+	 * {@link Generator#getRegions()}.
+	 * @param boxSize Determines the size of the grid, from 2 to 5. The grid
+	 * has the square of the box size as number of rows and regions.
+	 * @param limit Cancels the generation or restricts its time budget.
+	 * @return A Sudoku problem or {@code null} if the limit was exhausted
+	 * before a unique puzzle could be found.
+	 */
+	public static int[][] generateJigsawPuzzle(int boxSize, SearchLimit limit) {
+		long start = System.nanoTime();
+		statistics = new SearchStatistics();
+		Generator.boxSize = boxSize;
+		size = boxSize * boxSize;
+		variants = EnumSet.noneOf(Variant.class);
+		symmetry = Symmetry.NONE;
+		regions = new int[size][size]; // replaced by a random layout
+		samurai = false;
+		solution = new int[size][size];
+		return generate(start, limit);
+	}
+	
+	/**
+	 * Generates a samurai Sudoku problem with a unique solution, see
+	 * {@link Topology#getSamurai(int)} and 
+	 * {@link Generator#generatePuzzle(int, SearchLimit)}. The five grids are
+	 * checked for uniqueness as one network, so a grid may need the givens 
+	 * of its neighbors to be unique.
+	 * @param boxSize The number of rows of a box, from 2 to 5.
+	 * @param limit Cancels the generation or restricts its time budget.
+	 * @return A problem with the rows and columns of the samurai topology, 
+	 * e.g. 21 x 21 for box size 3, or {@code null} if the limit was 
+	 * exhausted before a unique puzzle could be found.
+	 */
+	public static int[][] generateSamuraiPuzzle(int boxSize, 
+			SearchLimit limit) {
+		long start = System.nanoTime();
+		statistics = new SearchStatistics();
+		Generator.boxSize = boxSize;
+		size = boxSize * boxSize;
+		variants = EnumSet.noneOf(Variant.class);
+		symmetry = Symmetry.NONE;
+		regions = null;
+		samurai = true;
+		topology = Topology.getSamurai(boxSize);
+		return generate(start, limit);
+	}
+	
+	/**
+	 * Generates a killer Sudoku with a unique solution. The cages are drawn
+	 * at random on a generated solved Sudoku. As long as the cages allow 
+	 * another solution, a cell where the solutions differ gets a cage of its
+	 * own.
+	 * @param boxSize The number of rows of a box, 2 or 3.
+	 * @param limit Cancels the generation or restricts its time budget.
+	 * @return The cages of the killer Sudoku, which has no givens, or 
+	 * {@code null} if the limit was exhausted before the cages were unique.
+	 * @throws IllegalArgumentException The box size is larger than 3.
+	 */
+	public static List<Cage> generateKillerPuzzle(int boxSize, 
+			SearchLimit limit) {
+		if(boxSize > 3)
+			throw new IllegalArgumentException(
+					"Killer Sudokus are limited to 9x9 grids");
+		long start = System.nanoTime();
+		statistics = new SearchStatistics();
+		Generator.boxSize = boxSize;
+		size = boxSize * boxSize;
+		variants = EnumSet.noneOf(Variant.class);
+		regions = null;
+		samurai = false;
+		topology = Topology.getClassic(boxSize);
+		solution = new int[size][size];
+		
+		GenerationEvent event = beginPhase();
+		boolean solutionGenerated = generateSolution(limit);
+		endPhase(event, GenerationEvent.FULL_GRID, solution);
+		if(!solutionGenerated)
+			return null;
+		
+		// cages don't survive transformations, but the solution is shuffled
+		// by fillLatinSquareSolution already
+		event = beginPhase();
+		List<Cage> cages = placeUniqueCages(limit);
+		endPhase(event, GenerationEvent.GIVENS, solution);
+		if(cages != null)
+			Metrics.record(Metrics.GENERATE, System.nanoTime() - start);
+		return cages;
+	}
+	
+	/**
+	 * Draws random cages on the solution and splits them until the solution
+	 * is unique. Uniqueness checks of some cages take very long, so new 
+	 * cages are drawn once a check exceeds its budget. The budget starts 
+	 * with {@link Generator#CAGE_BUDGET} and doubles with every drawing.
+	 * @return The cages or {@code null} if the limit was exhausted before
+	 * they were unique.
+	 */
+	private static List<Cage> placeUniqueCages(SearchLimit limit) {
+		Random random = new Random();
+		List<Cage> cages = CageGenerator.createCages(solution, random);
+		int[][] empty = new int[size][size];
+		long budget = CAGE_BUDGET;
+		while(!limit.isExhausted()) {
+			SudokuProblem problem = new SudokuProblem(empty, 
+					topology.withCages(cages), new SearchLimit(limit, budget), 
+					2);
+			statistics.add(problem.getStatistics());
+			if(problem.hasUniqueSolution())
+				return cages;
+			if(problem.getNumberOfSolutions() < 2) { // budget exhausted
+				cages = CageGenerator.createCages(solution, random);
+				budget *= 2;
+			}
+			else
+				CageGenerator.splitCage(solution, cages, 
+						findAmbiguousCell(problem.getSolution(), cages));
 		}
-		minimizeGivens();
-		Transformer transformer = new Transformer(instance);
+		return null;
+	}
+	
+	// finds a cell where the found solution differs from the generated one,
+	// or a cell of the largest cage if the generated one was found first
+	private static int findAmbiguousCell(int[][] found, List<Cage> cages) {
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				if(found[row][col] != solution[row][col])
+					return row * size + col;
+		Cage largest = cages.get(0);
+		for(Cage cage : cages)
+			if(cage.getCells().length > largest.getCells().length)
+				largest = cage;
+		return largest.getCells()[0];
+	}
+	
+	private static int[][] generate(long start, SearchLimit limit) {
+		GenerationEvent event = beginPhase();
+		boolean solutionGenerated = generateSolution(limit);
+		endPhase(event, GenerationEvent.FULL_GRID, solution);
+		if(!solutionGenerated)
+			return null;
+		if(symmetry != Symmetry.NONE && !isShuffled()) {
+			// transformations would break the symmetry of the givens, so 
+			// the solution is transformed before they are placed
+			event = beginPhase();
+			Transformer transformer = new Transformer(solution, variants);
+			transformer.transform();
+			solution = transformer.getInstance();
+			endPhase(event, GenerationEvent.TRANSFORMATION, solution);
+		}
+		
+		event = beginPhase();
+		boolean unique = placeUniqueGivens(limit);
+		endPhase(event, GenerationEvent.GIVENS, instance);
+		if(!unique)
+			return null;
+		
+		event = beginPhase();
+		minimizeGivens(limit);
+		endPhase(event, GenerationEvent.MINIMIZATION, instance);
+		if(samurai || symmetry != Symmetry.NONE || isShuffled()) {
+			// shuffled or transformed already
+			Metrics.record(Metrics.GENERATE, System.nanoTime() - start);
+			return instance;
+		}
+		
+		event = beginPhase();
+		Transformer transformer = regions == null
+				? new Transformer(instance, variants)
+				: new Transformer(instance, regions);
 		transformer.transform();
+		endPhase(event, GenerationEvent.TRANSFORMATION, 
+				transformer.getInstance());
+		regions = transformer.getRegions();
+		
+		Metrics.record(Metrics.GENERATE, System.nanoTime() - start);
 		return transformer.getInstance();
 	}
+	
+	// solutions of standard Sudokus are Latin square constructions that 
+	// fillLatinSquareSolution shuffles with a random isomorph, another 
+	// transformation would just draw a second one
+	private static boolean isShuffled() {
+		return !samurai && regions == null && variants.isEmpty();
+	}
+	
+	private static GenerationEvent beginPhase() {
+		GenerationEvent event = new GenerationEvent();
+		event.uniquenessChecks = statistics.getSearches();
+		event.begin();
+		return event;
+	}
+	
+	private static void endPhase(GenerationEvent event, String phase, 
+			int[][] grid) {
+		event.end();
+		if(event.shouldCommit()) {
+			event.phase = phase;
+			event.puzzle = SudokuIO.getShort(grid);
+			// checks of this phase = checks now - checks at the beginning
+			event.uniquenessChecks = 
+					statistics.getSearches() - event.uniquenessChecks;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Places givens of the solution until the resulting instance has a 
+	 * unique solution. The instance starts with a few random givens. As 
+	 * long as it has another solution besides the generated one, a given is
+	 * added at a random cell where the two solutions differ, which rules out
+	 * the other solution. Every given is kept, so no work is thrown away.
+	 * <p>
+	 * Instances with few givens may take very long to check, especially in
+	 * large grids. Every check gets a budget that starts with 
+	 * {@link Generator#GIVEN_BUDGET}; if it is exceeded, random givens are
+	 * added and the budget doubles. Minimization removes givens that turn 
+	 * out to be redundant.
+	 * @return {@code false} if the limit was exhausted before a unique 
+	 * instance was found.
+	 */
+	private static boolean placeUniqueGivens(SearchLimit limit) {
+		// start with as many givens as 20 of 81 cells of a standard Sudoku
+		int cells = 0;
+		for(int cell = 0; cell < topology.getCellCount(); cell++)
+			if(topology.contains(cell))
+				cells++;
+		int givens = Math.round(20f / 81f * cells);
+		instance = new int[topology.getRows()][topology.getColumns()];
+		givenOrbits.clear();
+		placeValues(givens);
+		Random random = new Random();
+		List<Position> differences = new ArrayList<Position>();
+		long budget = GIVEN_BUDGET;
+		while(!limit.isExhausted()) {
+			SolutionIterator solutions = new SolutionIterator(instance, 
+					topology, new SearchLimit(limit, budget));
+			int[][] other = solutions.hasNext() ? solutions.next() : null;
+			if(other != null && isSolution(other))
+				other = solutions.hasNext() ? solutions.next() : null;
+			statistics.add(solutions.getStatistics());
+			if(other == null && solutions.isComplete())
+				return true;
+			if(other == null) { // budget exceeded
+				placeValues(Math.min(givens / 8 + 1, countBlanks(cells)));
+				budget *= 2;
+				continue;
+			}
+			
+			differences.clear();
+			for(int row = 0; row < other.length; row++)
+				for(int col = 0; col < other[row].length; col++)
+					if(other[row][col] != solution[row][col])
+						differences.add(new Position(row, col));
+			Position pos = differences.get(random.nextInt(differences.size()));
+			List<Position> orbit = 
+					symmetry.getOrbit(pos.row, pos.column, size);
+			for(Position given : orbit)
+				instance[given.row][given.column] = 
+						solution[given.row][given.column];
+			givenOrbits.push(orbit);
+		}
+		return false;
+	}
+	
+	// the number of blank cells of the instance that belong to the topology
+	private static int countBlanks(int cells) {
+		for(int[] row : instance)
+			for(int value : row)
+				if(value != 0)
+					cells--;
+		return cells;
+	}
+	
+	private static boolean isSolution(int[][] grid) {
+		for(int row = 0; row < grid.length; row++)
+			if(!Arrays.equals(grid[row], solution[row]))
+				return false;
+		return true;
+	}
 
 	/**
-	 * Generates a 9x9 solved Sudoku instance.
+	 * Generates a solved Sudoku instance, i.e. a completely filled grid.
+	 * @param boxSize The number of rows of a box, from 2 to 5.
+	 * @param limit Cancels the generation or restricts its time budget.
+	 * @return A grid with the square of the box size as number of rows or
+	 * {@code null} if the limit was exhausted.
+	 */
+	public static int[][] generateSolution(int boxSize, SearchLimit limit) {
+		statistics = new SearchStatistics();
+		Generator.boxSize = boxSize;
+		size = boxSize * boxSize;
+		variants = EnumSet.noneOf(Variant.class);
+		regions = null;
+		samurai = false;
+		topology = Topology.getClassic(boxSize);
+		solution = new int[size][size];
+		if(!generateSolution(limit))
+			return null;
+		return solution;
+	}
+	
+	/**
+	 * Generates a solved Sudoku instance with the current box size.
+	 * @return {@code false} if the limit was exhausted before the instance
+	 * could be generated.
+	 */
+	private static boolean generateSolution(SearchLimit limit) {
+		if(samurai)
+			return fillSamuraiSolution(limit);
+		if(regions != null)
+			return fillJigsawSolution(limit);
+		if(!variants.isEmpty()) // Latin squares ignore the variant's peers
+			return fillVariantSolution(limit);
+		fillLatinSquareSolution();
+		return true;
+	}
+	
+	/**
+	 * Generates a solved standard Sudoku from random Latin squares without
+	 * search for every box size. Each block gets a Latin square, the 
+	 * overlay adds a multiple of the box size to every block, and swapping 
+	 * rows between the bands turns the blocks into valid rows. The grid is 
+	 * built in O(N^2) for N x N grids, only the overlay is sampled by the
+	 * Markov chain of {@link LatinSquareSolver#getRandomSquare(int, Random)}
+	 * since it is needed once. A random isomorph finally shuffles the rows,
+	 * columns and symbols within the Sudoku's symmetries.
 	 */
-	private static void generateSolution() {
-		// Fetch nine 3x3 Latin squares:
-		LatinSquareSolver.findSolutions(3);
-		LatinSquareSolution[] squares = LatinSquareSolver.getSample(9);
+	private static void fillLatinSquareSolution() {
+		Random random = new Random();
+		// Draw size Latin squares with boxSize rows, e.g. nine 3x3 squares:
+		LatinSquareSolution[] squares = new LatinSquareSolution[size];
+		for(int i = 0; i < size; i++)
+			squares[i] = LatinSquareSolver.getRandomIsotope(boxSize, random);
 		insertSquares(squares);
-		toBase10(LatinSquareSolver.getSample());
-		swapRows(1, 3);
-		swapRows(2, 6);
-		swapRows(5, 7);
+		toBase10(LatinSquareSolver.getRandomSquare(boxSize, random));
+		// swap the i-th row of band b with the b-th row of band i, e.g. the
+		// rows 1 and 3, 2 and 6, 5 and 7 of a 9x9 grid
+		for(int band = 0; band < boxSize; band++)
+			for(int i = band + 1; i < boxSize; i++)
+				swapRows(band * boxSize + i, i * boxSize + band);
+		solution = Isomorph.random(boxSize, random).apply(solution);
+	}
+	
+	/**
+	 * Fills a solved instance of the current variants by solving a grid with
+	 * random values in the first block. Blocks on the diagonal may share 
+	 * peers in variants, so only one block is filled at random. If these 
+	 * values can't be completed, an empty grid is solved instead.
+	 * @return {@code false} if the limit was exhausted or the variants allow
+	 * no solution.
+	 */
+	private static boolean fillVariantSolution(SearchLimit limit) {
+		List<Integer> values = new ArrayList<Integer>(size);
+		for(int value = 1; value <= size; value++)
+			values.add(value);
+		Collections.shuffle(values);
+		int[] cells = topology.getUnit(2 * size); // the first block
+		for(int i = 0; i < size; i++)
+			solution[topology.getRow(cells[i])]
+					[topology.getColumn(cells[i])] = values.get(i);
+		boolean solved = Solver.findSolution(solution, topology, limit);
+		statistics.add(Solver.getStatistics());
+		if(solved || !Solver.isComplete())
+			return solved;
+		
+		solution = new int[size][size];
+		solved = Solver.findSolution(solution, topology, limit);
+		statistics.add(Solver.getStatistics());
+		return solved;
+	}
+	
+	/**
+	 * Fills a solved samurai Sudoku grid by grid, starting with the center
+	 * grid. Every grid is a transformed solved standard Sudoku whose symbols
+	 * are relabeled to match the block it shares with the center grid.
+	 * @return {@code false} if the limit was exhausted before the instance
+	 * could be generated.
+	 */
+	private static boolean fillSamuraiSolution(SearchLimit limit) {
+		Topology samuraiTopology = topology;
+		int length = samuraiTopology.getRows();
+		int shift = size - boxSize;
+		int[][] offsets = {{shift, shift}, {0, 0}, {0, 2 * shift}, 
+				{2 * shift, 0}, {2 * shift, 2 * shift}};
+		int[][] grid = new int[length][length];
+		topology = Topology.getClassic(boxSize);
+		try {
+			for(int[] offset : offsets) {
+				solution = new int[size][size];
+				fillLatinSquareSolution();
+				if(limit.poll())
+					return false;
+				int[][] filled = solution; // shuffled already
+				
+				// symbols[v] is the symbol of v in the shared block
+				int[] symbols = new int[size + 1];
+				for(int value = 1; value <= size; value++)
+					symbols[value] = value; // for the center grid
+				for(int row = 0; row < size; row++)
+					for(int col = 0; col < size; col++) {
+						int shared = grid[offset[0] + row][offset[1] + col];
+						if(shared != 0)
+							symbols[filled[row][col]] = shared;
+					}
+				for(int row = 0; row < size; row++)
+					for(int col = 0; col < size; col++)
+						grid[offset[0] + row][offset[1] + col] = 
+								symbols[filled[row][col]];
+			}
+		} finally {
+			topology = samuraiTopology;
+		}
+		solution = grid;
+		return true;
+	}
+	
+	/**
+	 * Creates random region layouts until one of them can be completed to a
+	 * solved instance with a random first row. Some layouts have no 
+	 * solution at all, others take very long to complete, so the search is
+	 * restarted with a new layout once the budget of the layout is used up.
+	 * The budget starts with {@link Generator#LAYOUT_BUDGET} and doubles 
+	 * after every restart.
+	 * @return {@code false} if the limit was exhausted before a solved 
+	 * instance was found.
+	 */
+	private static boolean fillJigsawSolution(SearchLimit limit) {
+		Random random = new Random();
+		for(long budget = LAYOUT_BUDGET; !limit.isExhausted(); budget *= 2) {
+			regions = RegionGenerator.createRegions(boxSize, random);
+			topology = Topology.getJigsaw(regions);
+			solution = new int[size][size];
+			List<Integer> values = new ArrayList<Integer>(size);
+			for(int value = 1; value <= size; value++)
+				values.add(value);
+			Collections.shuffle(values, random);
+			for(int col = 0; col < size; col++)
+				solution[0][col] = values.get(col);
+			boolean solved = Solver.findSolution(solution, topology, 
+					new SearchLimit(limit, budget));
+			statistics.add(Solver.getStatistics());
+			if(solved)
+				return true;
+		}
+		return false;
 	}
 	
 	private static void insertSquares(LatinSquareSolution[] solutions) {
 		// block index increases from left to right and top to bottom
-		for(int blockIndex = 0; blockIndex < 9; blockIndex++) {
-			// pick the 3x3 Latin square corresponding to the current block
+		for(int blockIndex = 0; blockIndex < size; blockIndex++) {
+			// pick the Latin square corresponding to the current block
 			int[][] square = solutions[blockIndex].getSquare();
-			for(int row = 0; row < 3; row++)
-				for(int col = 0; col < 3; col++) {
+			for(int row = 0; row < boxSize; row++)
+				for(int col = 0; col < boxSize; col++) {
 					// find the position of the current Latin square cell 
 					// in the Sudoku grid and copy the value over
-					int sudokuRow = ((int) (blockIndex / 3)) * 3 + row;
-					int sudokuCol = 3 * (blockIndex%3) + col;
+					int sudokuRow = (blockIndex / boxSize) * boxSize + row;
+					int sudokuCol = boxSize * (blockIndex % boxSize) + col;
 					solution[sudokuRow][sudokuCol] = square[row][col];
 				}
 		}
 	}
 	
 	private static void toBase10(LatinSquareSolution overlay) {
+		// the overlay gives the "tens" digit of each block in base boxSize,
+		// the Latin square of the block the "ones" digit
 		int[][] square = overlay.getSquare();
-		for(int row = 0; row < 9; row++)
-			for(int col = 0; col < 9; col++) {
-				int lsRow = (int) row / 3;
-				int lsCol = (int) col / 3;
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++) {
+				int lsRow = row / boxSize;
+				int lsCol = col / boxSize;
 				int base10Value = 
-						square[lsRow][lsCol] * 3  +
+						square[lsRow][lsCol] * boxSize  +
 						solution[row][col] + 1;
 				solution[row][col] = base10Value;
 			}
 	}
 	
 	private static void swapRows(int row1, int row2) {
-		for(int col = 0; col < 9; col++) {
+		for(int col = 0; col < size; col++) {
 			int temp = solution[row1][col];
 			solution[row1][col] = solution[row2][col];
 			solution[row2][col] = temp;
@@ -104,24 +650,55 @@ public class Generator {
 		Random rowGenerator = new Random();
 		Random colGenerator = new Random();
 		while(placedValues < numberOfValues) {
-			int row = rowGenerator.nextInt(9);
-			int col = colGenerator.nextInt(9);
-			if(instance[row][col] == 0) {
-				instance[row][col] = solution[row][col];
-				givenPositions.push(new Position(row, col));
-				placedValues++;
+			int row = rowGenerator.nextInt(topology.getRows());
+			int col = colGenerator.nextInt(topology.getColumns());
+			if(instance[row][col] == 0 
+					&& topology.contains(topology.getCell(row, col))) {
+				// place the given and its symmetric counterpart
+				List<Position> orbit = symmetry.getOrbit(row, col, size);
+				for(Position pos : orbit)
+					instance[pos.row][pos.column] = 
+							solution[pos.row][pos.column];
+				givenOrbits.push(orbit);
+				placedValues += orbit.size();
 			}
 		}
 	}
 	
-	private static void minimizeGivens() {
-		while(!givenPositions.empty()) {
-			Position pos = givenPositions.pop();
-			int currentValue = instance[pos.row][pos.column];
-			instance[pos.row][pos.column] = 0; // remove given
-			SudokuProblem problem = new SudokuProblem(instance);
-			if(!problem.hasUniqueSolution()) // reinsert value if not unique
-				instance[pos.row][pos.column] = currentValue;
+	private static void minimizeGivens(SearchLimit limit) {
+		while(!givenOrbits.empty() && !limit.isExhausted()) {
+			// remove the givens of an orbit together to keep the symmetry
+			List<Position> orbit = givenOrbits.pop();
+			for(Position pos : orbit)
+				instance[pos.row][pos.column] = 0;
+			SudokuProblem problem = new SudokuProblem(instance, topology, 
+					new SearchLimit(limit, REMOVAL_BUDGET), 2);
+			statistics.add(problem.getStatistics());
+			// reinsert values if not unique or the check took too long
+			if(!problem.hasUniqueSolution())
+				for(Position pos : orbit)
+					instance[pos.row][pos.column] = 
+							solution[pos.row][pos.column];
 		}
 	}
+	
+	/**
+	 * Gets the summed up statistics of the uniqueness checks of the last
+	 * generated puzzle. Every check counts as one search, both while placing
+	 * the initial givens and while removing givens.
+	 * @return The statistics of the last call of 
+	 * {@link Generator#generatePuzzle(SearchLimit)}.
+	 */
+	public static SearchStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Gets the region map of the last generated jigsaw puzzle.
+	 * @return A N x N region map with regions numbered from 1 to N or 
+	 * {@code null} if the last generated puzzle has blocks.
+	 */
+	public static int[][] getRegions() {
+		return regions;
+	}
 }
@@ -0,0 +1,214 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package generator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import utile.SudokuIO;
+
+/**
+ * A transformation of a standard Sudoku that keeps its rows, columns and
+ * blocks: the rows are permuted within their bands and the bands among 
+ * each other, the columns likewise within and among stacks, the grid is
+ * optionally transposed and the symbols are relabeled. A transformed 
+ * puzzle has as many solutions as the original and is as hard to solve.
+ * <p>
+ * All parts of the transformation are composed into one map from cells to
+ * cells when the isomorph is created, so applying it is a single pass over
+ * the grid. Isomorphs are immutable and describe themselves via 
+ * {@link Isomorph#toString()}.
+ * @author robert
+ *
+ */
+public final class Isomorph {
+
+	private final int size;
+	// row r of the result is row rows[r] of the original, the same for 
+	// columns, symbols[v] is the new symbol of v, symbols[0] = 0
+	private final int[] rows;
+	private final int[] columns;
+	private final boolean transposed;
+	private final int[] symbols;
+	// cellMap[cell] is the cell of the original that moves to cell
+	private final int[] cellMap;
+	
+	private Isomorph(int[] rows, int[] columns, boolean transposed, 
+			int[] symbols) {
+		size = rows.length;
+		this.rows = rows;
+		this.columns = columns;
+		this.transposed = transposed;
+		this.symbols = symbols;
+		cellMap = new int[size * size];
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++) {
+				// transposing first swaps the roles of rows and columns
+				int sourceRow = transposed ? columns[col] : rows[row];
+				int sourceCol = transposed ? rows[row] : columns[col];
+				cellMap[row * size + col] = sourceRow * size + sourceCol;
+			}
+	}
+	
+	/**
+	 * Draws a transformation uniformly at random.
+	 * @param boxSize The number of rows of a box, from 1 to 5.
+	 * @param random The source of randomness.
+	 * @return A random isomorph for grids with the square of the box size 
+	 * as number of rows.
+	 */
+	public static Isomorph random(int boxSize, Random random) {
+		int size = boxSize * boxSize;
+		int[] symbols = new int[size + 1];
+		int[] permutation = shuffle(size, random);
+		for(int value = 1; value <= size; value++)
+			symbols[value] = permutation[value - 1] + 1;
+		return new Isomorph(shuffleLines(boxSize, random), 
+				shuffleLines(boxSize, random), random.nextBoolean(), symbols);
+	}
+	
+	/**
+	 * Creates distinct isomorphs of a puzzle, e.g. to expand a checked 
+	 * puzzle into many puzzles that look different. Isomorphs are drawn at 
+	 * random and dropped if they yield the puzzle itself or a puzzle 
+	 * yielded before, which is possible if the puzzle is symmetric.
+	 * @param puzzle A N x N puzzle, N being the square of a box size.
+	 * @param count The number of isomorphs to create.
+	 * @param random The source of randomness.
+	 * @return The isomorphs, fewer than requested if no new puzzle was 
+	 * found in count consecutive draws.
+	 */
+	public static List<Isomorph> expand(int[][] puzzle, int count, 
+			Random random) {
+		int boxSize = SudokuIO.getBoxSize(puzzle.length);
+		byte[] packed = pack(puzzle);
+		Set<String> seen = new HashSet<String>();
+		seen.add(toKey(packed));
+		List<Isomorph> isomorphs = new ArrayList<Isomorph>(count);
+		byte[] target = new byte[packed.length];
+		for(int misses = 0; isomorphs.size() < count && misses < count; ) {
+			Isomorph isomorph = random(boxSize, random);
+			isomorph.apply(packed, target);
+			if(seen.add(toKey(target))) {
+				isomorphs.add(isomorph);
+				misses = 0;
+			}
+			else
+				misses++;
+		}
+		return isomorphs;
+	}
+	
+	/**
+	 * Applies this transformation to a grid.
+	 * @param grid A N x N puzzle or solution with values from 0 to N.
+	 * @return A new transformed grid. 
+	 */
+	public int[][] apply(int[][] grid) {
+		int[][] result = new int[size][size];
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				result[row][col] = transposed 
+						? symbols[grid[columns[col]][rows[row]]]
+						: symbols[grid[rows[row]][columns[col]]];
+		return result;
+	}
+	
+	/**
+	 * Applies this transformation to a grid packed into one byte per cell,
+	 * see {@link Isomorph#pack(int[][])}.
+	 * @param source The packed grid.
+	 * @param target Receives the packed transformed grid. Must not be the
+	 * source.
+	 */
+	public void apply(byte[] source, byte[] target) {
+		for(int cell = 0; cell < cellMap.length; cell++)
+			target[cell] = (byte) symbols[source[cellMap[cell]]];
+	}
+	
+	/**
+	 * Packs a grid row by row into one byte per cell.
+	 * @param grid A grid with values from 0 to 25.
+	 * @return The packed grid.
+	 */
+	public static byte[] pack(int[][] grid) {
+		byte[] packed = new byte[grid.length * grid.length];
+		for(int row = 0; row < grid.length; row++)
+			for(int col = 0; col < grid.length; col++)
+				packed[row * grid.length + col] = (byte) grid[row][col];
+		return packed;
+	}
+	
+	public boolean isTransposed() {
+		return transposed;
+	}
+	
+	/**
+	 * Describes this transformation, e.g. 
+	 * "r:213456789 c:123456798 t:0 s:987654321". The row and column orders
+	 * list the original rows and columns in their new order, counting from 1,
+	 * t:1 means that the grid is transposed first, and the symbols are the
+	 * new symbols of 1 to N. Values above 9 are written as letters.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("r:");
+		for(int row : rows)
+			builder.append(SudokuIO.toSymbol(row + 1));
+		builder.append(" c:");
+		for(int col : columns)
+			builder.append(SudokuIO.toSymbol(col + 1));
+		builder.append(transposed ? " t:1 s:" : " t:0 s:");
+		for(int value = 1; value <= size; value++)
+			builder.append(SudokuIO.toSymbol(symbols[value]));
+		return builder.toString();
+	}
+	
+	// permutes the bands and the rows within every band
+	private static int[] shuffleLines(int boxSize, Random random) {
+		int[] bands = shuffle(boxSize, random);
+		int[] lines = new int[boxSize * boxSize];
+		for(int band = 0; band < boxSize; band++) {
+			int[] within = shuffle(boxSize, random);
+			for(int i = 0; i < boxSize; i++)
+				lines[band * boxSize + i] = bands[band] * boxSize + within[i];
+		}
+		return lines;
+	}
+	
+	// a random permutation of 0 to n - 1 (Fisher-Yates)
+	static int[] shuffle(int n, Random random) {
+		int[] permutation = new int[n];
+		for(int i = 0; i < n; i++) {
+			int j = random.nextInt(i + 1);
+			permutation[i] = permutation[j];
+			permutation[j] = i;
+		}
+		return permutation;
+	}
+	
+	private static String toKey(byte[] packed) {
+		char[] key = new char[packed.length];
+		for(int i = 0; i < packed.length; i++)
+			key[i] = (char) packed[i];
+		return new String(key);
+	}
+}
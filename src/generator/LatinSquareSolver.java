@@ -17,76 +17,326 @@
 
 package generator;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+import solver.SearchLimit;
 
 /**
- * Solver for Latin squares of variable size.
+ * Solver for Latin squares of variable size. Enumerating every Latin square
+ * is only feasible for small sizes, so random Latin squares of any size are
+ * sampled with the Markov chain of Jacobson and Matthews instead, see
+ * {@link LatinSquareSolver#getRandomSquare(int, Random)}.
+ * <p>
+ * The enumeration is restricted to reduced Latin squares, whose first row 
+ * and first column list the symbols in ascending order. Every Latin square 
+ * is obtained from exactly one reduced square by permuting the symbols and
+ * every row but the first, so the reduced squares are a factor of 
+ * size! * (size - 1)! fewer. The search forks a task for every value of 
+ * the first open cells and runs the tasks on the common fork-join pool.
  * @author robert
  *
  */
-class LatinSquareSolver {
+public class LatinSquareSolver {
+	
+	// a task is forked for every value of each of the first FORK_CELLS open
+	// cells, e.g. up to 30 tasks for squares of order 7
+	private static final int FORK_CELLS = 2;
 	
-	private static List<LatinSquareSolution> solutions = 
-			new ArrayList<LatinSquareSolution>(12);
+	/**
+	 * Counts the reduced Latin squares of the given size, e.g. 56 of order 5,
+	 * 9408 of order 6 and 16942080 of order 7.
+	 * @param size The side length of the squares, from 1 to 31.
+	 * @param limit Stops the search when exhausted.
+	 * @return The number of reduced Latin squares or -1 if the search was
+	 * stopped early.
+	 */
+	public static long countReducedSquares(int size, SearchLimit limit) {
+		Enumeration enumeration = new Enumeration(size, null, limit);
+		long count = enumeration.run();
+		return enumeration.stopped ? -1 : count;
+	}
 	
-	private static int[][] currentSolution;
-	private static int squareSize;
+	/**
+	 * Gets the number of every Latin square of the given size from the 
+	 * number of reduced ones, which is multiplied by size! * (size - 1)!.
+	 * @param size The side length of the squares.
+	 * @param reducedCount The number of reduced Latin squares of the size.
+	 * @return The number of Latin squares.
+	 */
+	public static BigInteger getSquareCount(int size, long reducedCount) {
+		BigInteger count = BigInteger.valueOf(reducedCount);
+		for(int factor = 2; factor <= size; factor++)
+			count = count.multiply(BigInteger.valueOf(factor));
+		for(int factor = 2; factor < size; factor++)
+			count = count.multiply(BigInteger.valueOf(factor));
+		return count;
+	}
 	
-	protected static void findSolutions(int size) {
-		currentSolution = new int[size][size];
-		squareSize = size;
-		LatinSquareCellList emptyCells = new LatinSquareCellList(size);
-		backtrack(emptyCells);
+	/**
+	 * Passes every reduced Latin square of the given size to the consumer
+	 * as soon as it is found. The squares are not stored, so the enumeration 
+	 * needs little memory even for the millions of squares of order 7.
+	 * @param size The side length of the squares, from 1 to 31.
+	 * @param consumer Receives a new array with symbols from 0 to size - 1
+	 * for every square. It is called from several threads in no particular
+	 * order, so it has to be thread-safe.
+	 * @param limit Stops the search when exhausted. The squares found so far
+	 * have been passed to the consumer.
+	 * @return {@code true} if every reduced Latin square was found, 
+	 * {@code false} if the search was stopped early.
+	 */
+	public static boolean enumerateReducedSquares(int size, 
+			Consumer<int[][]> consumer, SearchLimit limit) {
+		Enumeration enumeration = new Enumeration(size, consumer, limit);
+		enumeration.run();
+		return !enumeration.stopped;
 	}
 	
-	private static void backtrack(LatinSquareCellList emptyCells) {
-		if(emptyCells.isEmpty()) { // no more empty cells. solution found.
-			solutions.add(new LatinSquareSolution(currentSolution, squareSize));
-			return;
+	// the state shared by the tasks of one enumeration
+	private static class Enumeration {
+		
+		private final int size;
+		private final Consumer<int[][]> consumer;
+		private final SearchLimit limit;
+		private volatile boolean stopped = false;
+		
+		private Enumeration(int size, Consumer<int[][]> consumer, 
+				SearchLimit limit) {
+			if(size < 1 || size > 31)
+				throw new IllegalArgumentException("Latin squares of order " 
+						+ size + " are not supported.");
+			this.size = size;
+			this.consumer = consumer;
+			this.limit = limit;
 		}
 		
-		LatinSquareCell currentCell = emptyCells.removeMostConstrainedCell();
-		List<Integer> allowedValues = currentCell.getAllowedValues();
-		List<LatinSquareCell> neighbors = emptyCells.getNeighbors(currentCell);
+		private long run() {
+			// the fixed first row and column, the other cells are open
+			int[][] square = new int[size][size];
+			int[] rowSymbols = new int[size], colSymbols = new int[size];
+			for(int i = 0; i < size; i++) {
+				square[0][i] = i;
+				square[i][0] = i;
+				rowSymbols[i] = 1 << i;
+				colSymbols[i] = 1 << i;
+			}
+			rowSymbols[0] = (1 << size) - 1;
+			colSymbols[0] = (1 << size) - 1;
+			return ForkJoinPool.commonPool().invoke(
+					new EnumerationTask(this, square, rowSymbols, colSymbols, 
+							0));
+		}
+	}
+	
+	/**
+	 * Fills the open cells row by row from the given one on. The symbols
+	 * used by a row or column are kept as bit masks.
+	 */
+	@SuppressWarnings("serial")
+	private static class EnumerationTask extends RecursiveTask<Long> {
+		
+		private final Enumeration enumeration;
+		private final int size;
+		private final int[][] square;
+		private final int[] rowSymbols, colSymbols;
+		// index of the first open cell, counted row by row without the
+		// fixed first row and column
+		private final int first;
+		private SearchLimit limit;
+		
+		private EnumerationTask(Enumeration enumeration, int[][] square, 
+				int[] rowSymbols, int[] colSymbols, int first) {
+			this.enumeration = enumeration;
+			this.size = enumeration.size;
+			this.square = square;
+			this.rowSymbols = rowSymbols;
+			this.colSymbols = colSymbols;
+			this.first = first;
+		}
 		
-		for(int value : allowedValues) {
-			// keep track of cells that were affected by the current assignment
-			List<LatinSquareCell> affectedNeighbors = 
-					new LinkedList<LatinSquareCell>();
-			for(LatinSquareCell neighbor : neighbors)
-				if(neighbor.forbid(value)) // false if value already forbidden
-					affectedNeighbors.add(neighbor);
-			
-			// extend the current solution by the current assignment
-			currentSolution[currentCell.getRow()][currentCell.getCol()] = value;
-			backtrack(emptyCells);
-			
-			// before finding solutions for the next value, allow the current
-			// value in the neighbor cells
-			for(LatinSquareCell affectedNeighbor : affectedNeighbors)
-				affectedNeighbor.allow(value);
-		} // every possible solution for the current configuration found
+		@Override
+		protected Long compute() {
+			if(first >= FORK_CELLS || first == (size - 1) * (size - 1)) {
+				// a child limit per task, polling a limit isn't thread-safe
+				limit = new SearchLimit(enumeration.limit);
+				return backtrack(first);
+			}
+			int row = first / (size - 1) + 1, col = first % (size - 1) + 1;
+			int open = ~(rowSymbols[row] | colSymbols[col]) & (1 << size) - 1;
+			List<EnumerationTask> tasks = new ArrayList<EnumerationTask>();
+			for(; open != 0; open &= open - 1) {
+				int symbol = Integer.numberOfTrailingZeros(open);
+				int[][] copy = new int[size][];
+				for(int i = 0; i < size; i++)
+					copy[i] = square[i].clone();
+				copy[row][col] = symbol;
+				int[] rows = rowSymbols.clone(), cols = colSymbols.clone();
+				rows[row] |= 1 << symbol;
+				cols[col] |= 1 << symbol;
+				tasks.add(new EnumerationTask(enumeration, copy, rows, cols, 
+						first + 1));
+			}
+			long count = 0;
+			for(EnumerationTask task : invokeAll(tasks))
+				count += task.join();
+			return count;
+		}
 		
-		// clear this cell and go back to the previous cell
-		emptyCells.add(currentCell);
+		private long backtrack(int cell) {
+			if(cell == (size - 1) * (size - 1)) { // every cell is filled
+				if(enumeration.consumer != null) {
+					int[][] copy = new int[size][];
+					for(int i = 0; i < size; i++)
+						copy[i] = square[i].clone();
+					enumeration.consumer.accept(copy);
+				}
+				return 1;
+			}
+			if(enumeration.stopped || limit.poll()) {
+				enumeration.stopped = true;
+				return 0;
+			}
+			int row = cell / (size - 1) + 1, col = cell % (size - 1) + 1;
+			long count = 0;
+			int open = ~(rowSymbols[row] | colSymbols[col]) & (1 << size) - 1;
+			for(; open != 0; open &= open - 1) {
+				int bit = open & -open;
+				square[row][col] = Integer.numberOfTrailingZeros(bit);
+				rowSymbols[row] |= bit;
+				colSymbols[col] |= bit;
+				count += backtrack(cell + 1);
+				rowSymbols[row] &= ~bit;
+				colSymbols[col] &= ~bit;
+			}
+			return count;
+		}
 	}
 	
-	protected static LatinSquareSolution[] getSample(int size) {
-		LatinSquareSolution[] sample = new LatinSquareSolution[size];
-		Random random = new Random();
-		int solutionCount = solutions.size();
-		for(int i = 0; i < size; i++) {
-			int solutionIndex = random.nextInt(solutionCount);
-			sample[i] = solutions.get(solutionIndex);
+	/**
+	 * Samples a random Latin square of the given size from a nearly uniform
+	 * distribution without enumerating the squares. The square is viewed as
+	 * a cube with an entry of 1 for every row, column and symbol that occur
+	 * together and 0 elsewhere. Starting from the cyclic square, every step
+	 * of the Markov chain of Jacobson and Matthews adds +1 and -1 around the
+	 * corners of a subcube, which keeps every line of the cube summing to 1.
+	 * A step may leave a single entry of -1, the improper square, which the
+	 * next steps resolve. Only the steps from proper squares are counted: 
+	 * stopping at the first proper square after a fixed number of all steps
+	 * would favor the squares that end long improper stretches. The chain 
+	 * is run for size^3 steps from proper squares.
+	 * @param size The side length of the square.
+	 * @param random The source of randomness.
+	 * @return A Latin square with symbols from 0 to size - 1.
+	 */
+	protected static LatinSquareSolution getRandomSquare(int size, 
+			Random random) {
+		// cube[(row * size + col) * size + symbol] 
+		int[] cube = new int[size * size * size];
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				cube[(row * size + col) * size + (row + col) % size] = 1;
+		
+		// the -1 entry of an improper square, row < 0 for a proper square
+		int row = -1, col = 0, symbol = 0;
+		long steps = size > 1 ? (long) size * size * size : 0;
+		for(long step = 0; step < steps || row >= 0; ) {
+			if(row < 0) { // start at a 0 entry of the proper square
+				do {
+					row = random.nextInt(size);
+					col = random.nextInt(size);
+					symbol = random.nextInt(size);
+				} while(cube[(row * size + col) * size + symbol] != 0);
+				step++;
+			}
+			// the lines through the entry have one 1 entry, or two if the
+			// entry is the -1 of an improper square
+			int otherRow = findRow(cube, size, col, symbol, random);
+			int otherCol = findColumn(cube, size, row, symbol, random);
+			int otherSymbol = findSymbol(cube, size, row, col, random);
+			cube[(row * size + col) * size + symbol]++;
+			cube[(row * size + otherCol) * size + symbol]--;
+			cube[(otherRow * size + col) * size + symbol]--;
+			cube[(row * size + col) * size + otherSymbol]--;
+			cube[(otherRow * size + otherCol) * size + symbol]++;
+			cube[(otherRow * size + col) * size + otherSymbol]++;
+			cube[(row * size + otherCol) * size + otherSymbol]++;
+			int corner = (otherRow * size + otherCol) * size + otherSymbol;
+			cube[corner]--;
+			if(cube[corner] < 0) { // improper, continue at the -1 entry
+				row = otherRow;
+				col = otherCol;
+				symbol = otherSymbol;
+			}
+			else
+				row = -1;
 		}
-		return sample;
+		
+		int[][] square = new int[size][size];
+		for(int r = 0; r < size; r++)
+			for(int c = 0; c < size; c++)
+				for(int s = 0; s < size; s++)
+					if(cube[(r * size + c) * size + s] == 1)
+						square[r][c] = s;
+		return new LatinSquareSolution(square, size);
+	}
+	
+	/**
+	 * Gets a random isotope of the cyclic Latin square of the given size, 
+	 * i.e. the square with symbol (row + col) % size after permuting its 
+	 * rows, columns and symbols, in O(size^2). Up to order 3 every Latin
+	 * square is such an isotope and each is equally likely; larger squares
+	 * are restricted to the isotopes of the cyclic square.
+	 * @param size The side length of the square.
+	 * @param random The source of randomness.
+	 * @return A Latin square with symbols from 0 to size - 1.
+	 */
+	protected static LatinSquareSolution getRandomIsotope(int size, 
+			Random random) {
+		int[] rows = Isomorph.shuffle(size, random);
+		int[] columns = Isomorph.shuffle(size, random);
+		int[] symbols = Isomorph.shuffle(size, random);
+		int[][] square = new int[size][size];
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				square[row][col] = symbols[(rows[row] + columns[col]) % size];
+		return new LatinSquareSolution(square, size);
+	}
+	
+	// a row whose entry in the column and symbol is 1, one of two at random
+	// in an improper square
+	private static int findRow(int[] cube, int size, int col, int symbol, 
+			Random random) {
+		int found = -1;
+		for(int row = 0; row < size; row++)
+			if(cube[(row * size + col) * size + symbol] == 1
+					&& (found < 0 || random.nextBoolean()))
+				found = row;
+		return found;
+	}
+	
+	private static int findColumn(int[] cube, int size, int row, int symbol, 
+			Random random) {
+		int found = -1;
+		for(int col = 0; col < size; col++)
+			if(cube[(row * size + col) * size + symbol] == 1
+					&& (found < 0 || random.nextBoolean()))
+				found = col;
+		return found;
 	}
 	
-	protected static LatinSquareSolution getSample() {
-		LatinSquareSolution[] sample = getSample(1);
-		return sample[0];
+	private static int findSymbol(int[] cube, int size, int row, int col, 
+			Random random) {
+		int found = -1;
+		for(int symbol = 0; symbol < size; symbol++)
+			if(cube[(row * size + col) * size + symbol] == 1
+					&& (found < 0 || random.nextBoolean()))
+				found = symbol;
+		return found;
 	}
 }
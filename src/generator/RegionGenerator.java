@@ -0,0 +1,137 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package generator;
+
+import java.util.Random;
+
+/**
+ * Generates random region layouts for jigsaw Sudokus. A layout starts with
+ * the blocks of a standard Sudoku, which are deformed by exchanging cells 
+ * between touching regions. Every region keeps its size and stays 
+ * connected. Note that some layouts have no solution.
+ * @author robert
+ *
+ */
+public class RegionGenerator {
+	
+	// exchanges tried per cell of the grid
+	private static final int MOVES_PER_CELL = 8;
+	
+	private static final int[][] DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+	
+	/**
+	 * Creates a random region layout.
+	 * @param boxSize The number of rows of a block of the standard Sudoku 
+	 * the layout starts with, from 2 to 5.
+	 * @param random The source of randomness.
+	 * @return A N x N region map, N being the square of the box size, with 
+	 * regions numbered from 1 to N. Every region consists of N connected 
+	 * cells.
+	 */
+	public static int[][] createRegions(int boxSize, Random random) {
+		int size = boxSize * boxSize;
+		int[][] regions = new int[size][size];
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				regions[row][col] = (row / boxSize) * boxSize + col / boxSize + 1;
+		
+		for(int move = 0; move < MOVES_PER_CELL * size * size; move++) {
+			// a cell that touches another region moves to that region ...
+			int row = random.nextInt(size);
+			int col = random.nextInt(size);
+			int[] direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+			int otherRow = row + direction[0];
+			int otherCol = col + direction[1];
+			if(!isInside(otherRow, otherCol, size))
+				continue;
+			int from = regions[row][col];
+			int to = regions[otherRow][otherCol];
+			if(from == to)
+				continue;
+			
+			// ... and a random cell of that region moves back, so both 
+			// regions keep their size
+			regions[row][col] = to;
+			int[] back = pickCell(regions, to, from, random);
+			regions[back[0]][back[1]] = from;
+			if(!isConnected(regions, from) || !isConnected(regions, to)) {
+				regions[back[0]][back[1]] = to;
+				regions[row][col] = from;
+			}
+		}
+		return regions;
+	}
+	
+	private static boolean isInside(int row, int col, int size) {
+		return row >= 0 && row < size && col >= 0 && col < size;
+	}
+	
+	// picks a random cell of a region that touches another region
+	private static int[] pickCell(int[][] regions, int region, int other, 
+			Random random) {
+		int size = regions.length;
+		int[] picked = null;
+		int candidates = 0;
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				if(regions[row][col] == region 
+						&& touches(regions, row, col, other)
+						&& random.nextInt(++candidates) == 0) // reservoir sampling
+					picked = new int[] {row, col};
+		return picked;
+	}
+	
+	private static boolean touches(int[][] regions, int row, int col, 
+			int region) {
+		for(int[] direction : DIRECTIONS) {
+			int r = row + direction[0];
+			int c = col + direction[1];
+			if(isInside(r, c, regions.length) && regions[r][c] == region)
+				return true;
+		}
+		return false;
+	}
+	
+	private static boolean isConnected(int[][] regions, int region) {
+		int size = regions.length;
+		boolean[][] visited = new boolean[size][size];
+		int[] stack = new int[size * size];
+		int stackSize = 0;
+		int cells = 0;
+		for(int row = 0; row < size && stackSize == 0; row++)
+			for(int col = 0; col < size && stackSize == 0; col++)
+				if(regions[row][col] == region) {
+					visited[row][col] = true;
+					stack[stackSize++] = row * size + col;
+				}
+		while(stackSize > 0) {
+			int cell = stack[--stackSize];
+			cells++;
+			for(int[] direction : DIRECTIONS) {
+				int r = cell / size + direction[0];
+				int c = cell % size + direction[1];
+				if(isInside(r, c, size) && !visited[r][c] 
+						&& regions[r][c] == region) {
+					visited[r][c] = true;
+					stack[stackSize++] = r * size + c;
+				}
+			}
+		}
+		return cells == size;
+	}
+}
@@ -0,0 +1,86 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package generator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Symmetries of the pattern of givens, as required for printed puzzles. 
+ * The cells that a symmetry maps onto each other form an orbit. Givens are
+ * placed and removed orbit by orbit, so the pattern stays symmetric and 
+ * the generator needs one uniqueness check per orbit instead of one per 
+ * cell.
+ * @author robert
+ *
+ */
+public enum Symmetry {
+	
+	/** Givens are placed at random. */
+	NONE,
+	/** The pattern is the same after half a turn around the center. */
+	ROTATIONAL,
+	/** The left and the right half of the pattern are mirror images. */
+	MIRROR,
+	/** The pattern is symmetric to the diagonal from top left to bottom 
+	 * right. */
+	DIAGONAL;
+	
+	/**
+	 * Gets the cells a given at a position is paired with, including the
+	 * position itself.
+	 * @param row The row of the position.
+	 * @param col The column of the position.
+	 * @param size The number of rows and columns of the grid.
+	 * @return One or two different positions.
+	 */
+	List<Position> getOrbit(int row, int col, int size) {
+		List<Position> orbit = new ArrayList<Position>(2);
+		orbit.add(new Position(row, col));
+		int pairedRow = row;
+		int pairedCol = col;
+		switch(this) {
+		case ROTATIONAL:
+			pairedRow = size - 1 - row;
+			pairedCol = size - 1 - col;
+			break;
+		case MIRROR:
+			pairedCol = size - 1 - col;
+			break;
+		case DIAGONAL:
+			pairedRow = col;
+			pairedCol = row;
+			break;
+		default:
+			break;
+		}
+		if(pairedRow != row || pairedCol != col)
+			orbit.add(new Position(pairedRow, pairedCol));
+		return orbit;
+	}
+	
+	/**
+	 * Parses the name of a symmetry, ignoring case, e.g. "rotational".
+	 * @param name The name of a symmetry.
+	 * @return The symmetry.
+	 * @throws IllegalArgumentException If there is no symmetry of that name.
+	 */
+	public static Symmetry parse(String name) {
+		return valueOf(name.trim().toUpperCase());
+	}
+}
@@ -19,8 +19,11 @@ package generator;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Random;
+import java.util.Set;
 
+import topology.Variant;
 import utile.SudokuIO;
 
 /**
@@ -31,113 +34,129 @@ import utile.SudokuIO;
 public class Transformer {
 	
 	private int[][] instance;
+	private int size;
+	private int boxSize;
+	private Set<Variant> variants;
+	private int[][] regions;
 	private Random random = new Random();
 
 	public Transformer(int[][] sudokuInstance) {
+		this(sudokuInstance, EnumSet.noneOf(Variant.class));
+	}
+	
+	/**
+	 * Creates a transformer for an instance of a Sudoku variant. Swapping 
+	 * rows, columns, bands or stacks breaks the constraints of every 
+	 * variant, so instances of variants are only mirrored, transposed and
+	 * relabeled.
+	 * @param sudokuInstance The instance to transform.
+	 * @param variants The variants the instance is subject to.
+	 */
+	public Transformer(int[][] sudokuInstance, Set<Variant> variants) {
 		instance = sudokuInstance;
+		size = instance.length;
+		boxSize = SudokuIO.getBoxSize(size);
+		this.variants = variants;
+	}
+	
+	/**
+	 * Creates a transformer for an instance of a jigsaw Sudoku. The region
+	 * map is mirrored and transposed along with the instance, see 
+	 * {@link Transformer#getRegions()}.
+	 * @param sudokuInstance The instance to transform.
+	 * @param regions The region map of the instance with regions numbered
+	 * from 1 to N.
+	 */
+	public Transformer(int[][] sudokuInstance, int[][] regions) {
+		this(sudokuInstance, EnumSet.noneOf(Variant.class));
+		this.regions = regions;
 	}
 	
 	public Transformer(String shortSudoku) {
-		instance = SudokuIO.loadSudoku(shortSudoku);
+		this(SudokuIO.loadSudoku(shortSudoku));
 	}
 
 	public int[][] getInstance() {
 		return instance;
 	}
-
-	public void transform() {
-		transformRows();
-		transformCols();
-		transformBands();
-		transformStacks();
-		transformSymbols();
-		if(random.nextBoolean())
-			transpose();
-	}
 	
-	private void transformRows() {
-		for(int band = 0; band < 3; band++)
-			for(int swap = 1; swap <= 2; swap++) { // 2 swaps per band
-				int aRow = random.nextInt(3) + band * 3;
-				int anotherRow = random.nextInt(3) + band * 3;
-				swapRows(aRow, anotherRow);
-			}
+	/**
+	 * Gets the region map of a jigsaw instance after the transformation.
+	 * @return The region map or {@code null} if the instance has blocks.
+	 */
+	public int[][] getRegions() {
+		return regions;
 	}
-	
-	private void swapRows(int row1, int row2) {
-		for(int col = 0; col < 9; col++) {
-			int temp = instance[row1][col];
-			instance[row1][col] = instance[row2][col];
-			instance[row2][col] = temp;
+
+	public void transform() {
+		if(!variants.isEmpty() || regions != null) {
+			transformVariant();
+			return;
 		}
+		instance = Isomorph.random(boxSize, random).apply(instance);
 	}
 	
-	private void transformCols() {
-		for(int stack = 0; stack < 3; stack++)
-			for(int swap = 1; swap <= 2; swap++) { // 2 swaps per band
-				int aCol = random.nextInt(3) + stack * 3;
-				int anotherCol = random.nextInt(3) + stack * 3;
-				swapCols(aCol, anotherCol);
-			}
-	}
-	
-	private void swapCols(int col1, int col2) {
-		for(int row = 0; row < 9; row++) {
-			int temp = instance[row][col1];
-			instance[row][col1] = instance[row][col2];
-			instance[row][col2] = temp;
+	private void transformVariant() {
+		// mirroring keeps diagonals, king and knight moves and the position 
+		// within a block (up to a renumbering of the disjoint groups). 
+		// Regions are mirrored along with the instance.
+		if(random.nextBoolean()) {
+			mirrorRows(instance);
+			mirrorRows(regions);
 		}
-	}
-	
-	private void transformBands() {
-		for(int swap = 1; swap <= 2; swap++) { // swap bands 2 times
-			int aBand = random.nextInt(3);
-			int anotherBand = random.nextInt(3);
-			swapBands(aBand, anotherBand);
+		if(random.nextBoolean()) {
+			mirrorCols(instance);
+			mirrorCols(regions);
+		}
+		transformSymbols();
+		if(random.nextBoolean()) {
+			transpose(instance);
+			transpose(regions);
 		}
 	}
 	
-	private void swapBands(int band1, int band2) {
-		int row1 = band1 * 3;
-		int row2 = band2 * 3;
-		for(int i = 0; i < 3; i++)
-			swapRows(row1 + i, row2 + i);
-	}
-	
-	private void transformStacks() {
-		for(int swap = 1; swap <= 2; swap++) { // swap stacks 2 times
-			int aStack = random.nextInt(3);
-			int anotherStack = random.nextInt(3);
-			swapStacks(aStack, anotherStack);
+	private void mirrorRows(int[][] grid) {
+		if(grid == null)
+			return;
+		for(int row = 0; row < size / 2; row++) {
+			int[] temp = grid[row];
+			grid[row] = grid[size - 1 - row];
+			grid[size - 1 - row] = temp;
 		}
 	}
 	
-	private void swapStacks(int stack1, int stack2) {
-		int col1 = stack1 * 3;
-		int col2 = stack2 * 3;
-		for(int i = 0; i < 3; i++)
-			swapCols(col1 + i, col2 + i);
+	private void mirrorCols(int[][] grid) {
+		if(grid == null)
+			return;
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size / 2; col++) {
+				int temp = grid[row][col];
+				grid[row][col] = grid[row][size - 1 - col];
+				grid[row][size - 1 - col] = temp;
+			}
 	}
 	
 	private void transformSymbols() {
 		ArrayList<Integer> newSymbols = new ArrayList<Integer>();
-		for(int symbol = 1; symbol <= 9; symbol++)
+		for(int symbol = 1; symbol <= size; symbol++)
 			newSymbols.add(symbol);
 		Collections.shuffle(newSymbols);
-		for(int row = 0; row < 9; row++)
-			for(int col = 0; col < 9; col++)
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
 				if(instance[row][col] != 0)
 					instance[row][col] = newSymbols.get(instance[row][col] - 1);
 	}
 	
-	private void transpose() {
-		for(int row = 0; row < 9; row++)
+	private void transpose(int[][] grid) {
+		if(grid == null)
+			return;
+		for(int row = 0; row < size; row++)
 			for(int col = 0; col < row; col++) {
 				// mirror values along the diagonal from top left to bottom right
-				int temp = instance[row][col];
-				instance[row][col] =
-						instance[col][row];
-				instance[col][row] = temp;
+				int temp = grid[row][col];
+				grid[row][col] =
+						grid[col][row];
+				grid[col][row] = temp;
 			}
 	}
 }
@@ -0,0 +1,136 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JLabel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import solver.SearchLimit;
+
+/**
+ * Runs a long search (generating, solving or rating a puzzle) in the
+ * background so that the board stays responsive. While the search is 
+ * running, the elapsed time is shown in a status label. The search can be
+ * cancelled via {@link SearchTask#cancelSearch()} and stops on its own when
+ * its time budget is used up.
+ * @author robert
+ *
+ * @param <T> The result of the search.
+ */
+abstract class SearchTask<T> extends SwingWorker<T, Void> {
+
+	private final String activity;
+	private final JLabel statusArea;
+	private final SearchLimit limit;
+	private final Timer progress;
+	private final long start = System.currentTimeMillis();
+	
+	/**
+	 * Creates a new background search.
+	 * @param activity Describes the search in the status label, e.g. 
+	 * "Solving".
+	 * @param statusArea The label showing the progress of the search.
+	 * @param timeBudget The time in milliseconds the search may take.
+	 */
+	protected SearchTask(String activity, JLabel statusArea, long timeBudget) {
+		this.activity = activity;
+		this.statusArea = statusArea;
+		this.limit = new SearchLimit(timeBudget);
+		
+		// refresh the elapsed time twice a second on the event dispatch thread
+		progress = new Timer(500, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				showProgress();
+			}
+		});
+	}
+	
+	/**
+	 * Starts the search in a background thread.
+	 */
+	protected void start() {
+		showProgress();
+		progress.start();
+		execute();
+	}
+	
+	/**
+	 * Asks the search to stop. The search finishes with the results found so
+	 * far.
+	 */
+	protected void cancelSearch() {
+		limit.cancel();
+	}
+	
+	private void showProgress() {
+		long seconds = (System.currentTimeMillis() - start) / 1000;
+		statusArea.setText(activity + "... " + seconds + "s");
+	}
+	
+	/**
+	 * Runs the search. Called in a background thread.
+	 * @param limit The limit the search has to poll.
+	 * @return The result of the search.
+	 * @throws Exception The search failed.
+	 */
+	protected abstract T search(SearchLimit limit) throws Exception;
+	
+	/**
+	 * Shows the result of the search. Called on the event dispatch thread.
+	 * @param result The result of the search.
+	 * @param limit The limit of the search. Tells if the search was cancelled
+	 * or timed out.
+	 * @throws Exception The result could not be shown.
+	 */
+	protected abstract void finish(T result, SearchLimit limit) 
+			throws Exception;
+	
+	/**
+	 * Reports an error of the search or of showing its result. Called on the
+	 * event dispatch thread.
+	 * @param error The error.
+	 */
+	protected abstract void fail(Exception error);
+	
+	@Override
+	protected T doInBackground() throws Exception {
+		return search(limit);
+	}
+
+	@Override
+	protected void done() {
+		progress.stop();
+		try {
+			finish(get(), limit);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof Exception)
+				fail((Exception) cause);
+			else
+				fail(e);
+		} catch (Exception e) {
+			fail(e);
+		}
+	}
+}
@@ -24,6 +24,8 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import javax.swing.UIManager;
 import javax.swing.SwingUtilities;
@@ -34,6 +36,8 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import rating.Rater;
+import solver.SearchLimit;
+import solver.SolutionEstimator;
 import solver.SudokuProblem;
 import utile.ErrorFormatter;
 import utile.SudokuIO;
@@ -66,20 +70,51 @@ public class SudokuSolver extends JFrame {
 	private JButton saveButton;
 	private JButton clearButton;
 	private JButton rateButton;
+	private JButton cancelButton;
 	private JLabel statusArea;
+	private SearchTask<?> currentTask;
+	
+	// time in milliseconds a search may take before it is stopped
+	private static final long TIME_BUDGET = 30000;
+	// time in milliseconds solutions are counted before they are estimated
+	private static final long COUNT_BUDGET = 2000;
+	private static final int ESTIMATE_SAMPLES = 1000;
 	String lastPath = "";
 
 	private ActionListener generator = new ActionListener() {
 	
 		@Override
 		public void actionPerformed(ActionEvent event) {
-			try {
-				inputBoard.setPuzzle(Generator.generatePuzzle());
-			} catch (Exception internalError) {
-				statusArea.setText("Broken Sudoku generator. Contact vendor.");
-				ErrorFormatter formatter = new ErrorFormatter();
-				System.out.println(formatter.format(internalError));
-			}
+			startTask(new SearchTask<int[][]>("Generating", statusArea, 
+					TIME_BUDGET) {
+				@Override
+				protected int[][] search(SearchLimit limit) {
+					return Generator.generatePuzzle(limit);
+				}
+				
+				@Override
+				protected void finish(int[][] puzzle, SearchLimit limit) 
+						throws Exception {
+					if(puzzle == null) {
+						statusArea.setText("Generation " + 
+								describeStop(limit) + ".");
+						return;
+					}
+					inputBoard.setPuzzle(puzzle);
+					if(limit.isExhausted())
+						statusArea.setText("Generation " + describeStop(limit)
+								+ ": puzzle is unique but not minimal.");
+					else
+						statusArea.setText("New puzzle generated.");
+				}
+				
+				@Override
+				protected void fail(Exception internalError) {
+					statusArea.setText("Broken Sudoku generator. Contact vendor.");
+					ErrorFormatter formatter = new ErrorFormatter();
+					System.out.println(formatter.format(internalError));
+				}
+			});
 		}
 	};
 
@@ -129,22 +164,54 @@ public class SudokuSolver extends JFrame {
 	private ActionListener solver = new ActionListener() {
 		@Override
 		public void actionPerformed(ActionEvent event) {
-			try {
-				SudokuProblem sp = new SudokuProblem(inputBoard.toIntArray());
-				if (sp.hasSolution())
-					inputBoard.solve(sp.getSolution());
-				int count = sp.getNumberOfSolutions();
-				if (count == 1)
-					statusArea.setText("Solution found.");
-				else if (count == 0)
-					statusArea.setText("Unable to solve: illegal user input.");
-				else if (count > 1)
-					statusArea.setText("Puzzle has more than one solution.");
-			} catch (Exception e) {
-				statusArea.setText("Broken solver. Contact the vendor.");
-				ErrorFormatter formatter = new ErrorFormatter();
-				System.out.println(formatter.format(e));
-			}
+			final int[][] puzzle = inputBoard.toIntArray();
+			startTask(new SearchTask<SudokuProblem>("Solving", statusArea, 
+					TIME_BUDGET) {
+				// set if there are too many solutions to count them
+				private SolutionEstimator estimator;
+				
+				@Override
+				protected SudokuProblem search(SearchLimit limit) {
+					SudokuProblem sp = new SudokuProblem(puzzle, 
+							new SearchLimit(limit, COUNT_BUDGET));
+					if (!sp.isComplete() && !limit.isExhausted())
+						estimator = new SolutionEstimator(puzzle, limit, 
+								ESTIMATE_SAMPLES);
+					return sp;
+				}
+				
+				@Override
+				protected void finish(SudokuProblem sp, SearchLimit limit) 
+						throws Exception {
+					if (sp.hasSolution())
+						inputBoard.solve(sp.getSolution());
+					int count = sp.getNumberOfSolutions();
+					if (estimator != null && estimator.getEstimate() > count)
+						statusArea.setText("Puzzle has " + estimator + ".");
+					else if (!sp.isComplete() && limit.isExhausted())
+						statusArea.setText("Search " + describeStop(limit) 
+								+ " after " + count + " solution(s).");
+					else if (!sp.isComplete() && count > 1)
+						statusArea.setText("Puzzle has more than one solution.");
+					else if (!sp.isComplete()) // the count budget ran out
+						statusArea.setText("Search stopped after " + count 
+								+ " solution(s) and " + COUNT_BUDGET / 1000 
+								+ " s of counting.");
+					else if (count == 1)
+						statusArea.setText("Solution found.");
+					else if (count == 0)
+						statusArea.setText("Unable to solve: illegal user input.");
+					else if (count > 1)
+						statusArea.setText("Puzzle has more than one solution.");
+				}
+				
+				@Override
+				protected void fail(Exception e) {
+					statusArea.setText("Broken solver. Contact the vendor.");
+					ErrorFormatter formatter = new ErrorFormatter();
+					System.out.println(formatter.format(e));
+				}
+			});
 		}
 	};
 
@@ -164,9 +231,48 @@ public class SudokuSolver extends JFrame {
 	private ActionListener rater = new ActionListener() {
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			Rater rater = new Rater(inputBoard.toIntArray());
-			int time = rater.getEstimatedTime();
-			statusArea.setText("Time to solve: ca. " + time + " minutes.");
+			final int[][] puzzle = inputBoard.toIntArray();
+			startTask(new SearchTask<Rater>("Rating", statusArea, 
+					TIME_BUDGET) {
+				@Override
+				protected Rater search(SearchLimit limit) {
+					return new Rater(puzzle, limit);
+				}
+				
+				@Override
+				protected void finish(Rater rater, SearchLimit limit) {
+					if (!rater.hasSolution()) {
+						statusArea.setText("Unable to rate: puzzle has no "
+								+ "solution.");
+						return;
+					}
+					if (rater.getRunsCompleted() == 0) {
+						statusArea.setText("Rating " + describeStop(limit) + ".");
+						return;
+					}
+					int time = rater.getEstimatedTime();
+					String text = "Time to solve: ca. " + time + " minutes.";
+					if (!rater.isComplete())
+						text += " (rating " + describeStop(limit) + " after "
+								+ rater.getRunsCompleted() + " runs)";
+					statusArea.setText(text);
+				}
+				
+				@Override
+				protected void fail(Exception error) {
+					statusArea.setText("Broken rater. Contact the vendor.");
+					ErrorFormatter formatter = new ErrorFormatter();
+					System.out.println(formatter.format(error));
+				}
+			});
+		}
+	};
+	
+	private ActionListener canceller = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (currentTask != null)
+				currentTask.cancelSearch();
 		}
 	};
 
@@ -222,6 +328,10 @@ public class SudokuSolver extends JFrame {
 		rateButton = new JButton("rate");
 		buttons.add(rateButton);
 		
+		cancelButton = new JButton("cancel");
+		cancelButton.setEnabled(false);
+		buttons.add(cancelButton);
+		
 		gbc.gridy++;
 		this.add(buttons, gbc);
 		
@@ -231,6 +341,7 @@ public class SudokuSolver extends JFrame {
 		saveButton.addActionListener(saver);
 		clearButton.addActionListener(clearer);
 		rateButton.addActionListener(rater);
+		cancelButton.addActionListener(canceller);
 		
 		this.pack();
 	}
@@ -238,4 +349,43 @@ public class SudokuSolver extends JFrame {
 	private SudokuSolver getMainFrame() {
 		return this;
 	}
+	
+	/**
+	 * Runs a search in the background. Every button except the cancel button
+	 * is disabled until the search is finished, so that only one search runs
+	 * at a time.
+	 * @param task The search to run.
+	 */
+	private void startTask(final SearchTask<?> task) {
+		currentTask = task;
+		setSearchButtonsEnabled(false);
+		task.addPropertyChangeListener(new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent event) {
+				if (task.isDone() && currentTask == task) {
+					currentTask = null;
+					setSearchButtonsEnabled(true);
+				}
+			}
+		});
+		task.start();
+	}
+	
+	private void setSearchButtonsEnabled(boolean enabled) {
+		loadButton.setEnabled(enabled);
+		saveButton.setEnabled(enabled);
+		generateButton.setEnabled(enabled);
+		solveButton.setEnabled(enabled);
+		clearButton.setEnabled(enabled);
+		rateButton.setEnabled(enabled);
+		cancelButton.setEnabled(!enabled);
+	}
+	
+	private static String describeStop(SearchLimit limit) {
+		if (limit.isTimedOut())
+			return "timed out";
+		if (limit.isCancelled())
+			return "cancelled";
+		return "stopped";
+	}
 }
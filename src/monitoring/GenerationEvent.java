@@ -0,0 +1,52 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for one phase of {@link generator.Generator}: 
+ * building the full grid, placing the givens, minimizing the givens or
+ * transforming the puzzle.
+ * @author robert
+ *
+ */
+@Name("sudoku.Generation")
+@Label("Generate Sudoku")
+@Category("Sudoku")
+@Description("A phase of the generation of a Sudoku puzzle")
+public class GenerationEvent extends jdk.jfr.Event {
+
+	public static final String FULL_GRID = "full grid";
+	public static final String GIVENS = "given placement";
+	public static final String MINIMIZATION = "minimization";
+	public static final String TRANSFORMATION = "transformation";
+	
+	@Label("Phase")
+	public String phase;
+	
+	@Label("Puzzle")
+	@Description("The grid after this phase in the short format")
+	public String puzzle;
+	
+	@Label("Uniqueness Checks")
+	public long uniquenessChecks;
+}
@@ -0,0 +1,50 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for reading or writing Sudoku files via 
+ * {@link utile.SudokuIO}.
+ * @author robert
+ *
+ */
+@Name("sudoku.IO")
+@Label("Sudoku IO")
+@Category("Sudoku")
+@Description("Loading or saving a Sudoku file")
+public class IOEvent extends jdk.jfr.Event {
+
+	@Label("Operation")
+	public String operation;
+	
+	@Label("Path")
+	public String path;
+	
+	@Label("Sudokus")
+	@Description("The number of Sudokus loaded or saved")
+	public int count;
+	
+	@Label("Puzzle")
+	@Description("The puzzle in the short format if there is only one")
+	public String puzzle;
+}
@@ -0,0 +1,185 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package monitoring;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the latencies of solving, rating, generating and IO operations and
+ * periodically appends throughput and latency percentiles to a local file.
+ * Recording is a no-op until {@link Metrics#startReporting(File, long)} is
+ * called. Each line of the file covers one operation in one period: <br/>
+ * time	operation	count	ops/s	p50(ms)	p99(ms)
+ * @author robert
+ *
+ */
+public class Metrics {
+
+	public static final String SOLVE = "solve";
+	public static final String RATE = "rate";
+	public static final String GENERATE = "generate";
+	public static final String LOAD = "load";
+	public static final String SAVE = "save";
+	
+	private static volatile boolean enabled = false;
+	private static Map<String, LatencyWindow> windows = 
+			new TreeMap<String, LatencyWindow>();
+	private static long windowStart;
+	private static File target;
+	private static ScheduledExecutorService reporter;
+	
+	/**
+	 * Records the latency of an operation. Does nothing unless reporting was
+	 * started. May be called from any thread.
+	 * @param operation The name of the operation, e.g. {@link Metrics#SOLVE}.
+	 * @param nanos The latency of the operation in nanoseconds.
+	 */
+	public static void record(String operation, long nanos) {
+		if(!enabled)
+			return;
+		synchronized(windows) {
+			LatencyWindow window = windows.get(operation);
+			if(window == null) {
+				window = new LatencyWindow();
+				windows.put(operation, window);
+			}
+			window.add(nanos);
+		}
+	}
+	
+	/**
+	 * Starts appending metrics to a file periodically.
+	 * @param file The file to append the metrics to. A header is written if
+	 * the file is empty.
+	 * @param period The time in milliseconds between two dumps.
+	 */
+	public static synchronized void startReporting(File file, long period) {
+		if(reporter != null)
+			stopReporting();
+		target = file;
+		synchronized(windows) {
+			windows.clear();
+			windowStart = System.nanoTime();
+		}
+		reporter = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable task) {
+						Thread thread = new Thread(task, "metrics reporter");
+						thread.setDaemon(true); // don't keep the program alive
+						return thread;
+					}
+				});
+		reporter.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				dump();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+		enabled = true;
+	}
+	
+	/**
+	 * Stops the periodic reporting and dumps the metrics recorded since the
+	 * last dump.
+	 */
+	public static synchronized void stopReporting() {
+		if(reporter == null)
+			return;
+		enabled = false;
+		reporter.shutdown();
+		try {
+			reporter.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		reporter = null;
+		dump();
+	}
+	
+	private static void dump() {
+		Map<String, LatencyWindow> finished;
+		long elapsed;
+		synchronized(windows) {
+			finished = windows;
+			windows = new TreeMap<String, LatencyWindow>();
+			long now = System.nanoTime();
+			elapsed = now - windowStart;
+			windowStart = now;
+		}
+		if(finished.isEmpty())
+			return;
+		
+		String time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss")
+				.format(new Date());
+		double seconds = elapsed / 1e9;
+		try {
+			boolean writeHeader = target.length() == 0;
+			BufferedWriter writer = new BufferedWriter(
+					new FileWriter(target, true));
+			if(writeHeader)
+				writer.write("time\toperation\tcount\tops/s\tp50(ms)\tp99(ms)\n");
+			for(Map.Entry<String, LatencyWindow> entry : finished.entrySet()) {
+				LatencyWindow window = entry.getValue();
+				writer.write(String.format("%s\t%s\t%d\t%.2f\t%.3f\t%.3f%n",
+						time, entry.getKey(), window.count, 
+						window.count / seconds, 
+						window.percentile(0.5) / 1e6, 
+						window.percentile(0.99) / 1e6));
+			}
+			writer.close();
+		} catch (IOException e) {
+			System.err.println("Could not write metrics to " + target);
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * The latencies of one operation recorded since the last dump.
+	 */
+	private static class LatencyWindow {
+		
+		private long[] latencies = new long[64];
+		private int count = 0;
+		
+		private void add(long nanos) {
+			if(count == latencies.length)
+				latencies = Arrays.copyOf(latencies, count * 2);
+			latencies[count++] = nanos;
+		}
+		
+		private long percentile(double p) {
+			long[] sorted = Arrays.copyOf(latencies, count);
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(p * count) - 1;
+			return sorted[Math.max(index, 0)];
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the rating of a puzzle by a 
+ * {@link rating.Rater}.
+ * @author robert
+ *
+ */
+@Name("sudoku.Rate")
+@Label("Rate Sudoku")
+@Category("Sudoku")
+@Description("Rating of the difficulty of a Sudoku puzzle")
+public class RateEvent extends jdk.jfr.Event {
+
+	@Label("Puzzle")
+	@Description("The puzzle in the short format")
+	public String puzzle;
+	
+	@Label("Runs")
+	@Description("Number of finished rating runs")
+	public int runs;
+	
+	@Label("Refutation Sum")
+	public int refutationSum;
+	
+	@Label("Dependency Metric")
+	public int dependencyMetric;
+}
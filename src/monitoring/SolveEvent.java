@@ -0,0 +1,51 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the construction of a 
+ * {@link solver.SudokuProblem}, i.e. one search for the solutions of a 
+ * puzzle.
+ * @author robert
+ *
+ */
+@Name("sudoku.Solve")
+@Label("Solve Sudoku")
+@Category("Sudoku")
+@Description("Search for the solutions of a Sudoku puzzle")
+public class SolveEvent extends jdk.jfr.Event {
+
+	@Label("Puzzle")
+	@Description("The puzzle in the short format")
+	public String puzzle;
+	
+	@Label("Solutions")
+	public int solutions;
+	
+	@Label("Complete")
+	@Description("False if the search was stopped early")
+	public boolean complete;
+	
+	@Label("Nodes")
+	public long nodes;
+}
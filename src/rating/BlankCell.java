@@ -17,8 +17,9 @@
 
 package rating;
 
-import java.util.BitSet;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Represents a blank cell of a Sudoku puzzle.
@@ -39,13 +40,25 @@ class BlankCell {
 	 */
 	protected static final int infinite = 1000;
 	
-	protected final int row, column, block;
+	protected final int row, column;
 	protected final int solution;
 	
-	private BitSet candidates;
+	// the units of this cell, shared with the topology of the grid
+	private final int[] units;
+	
+	// bit v - 1 is set if value v is a candidate
+	private long candidates;
 	private int candidateCount;
 	
-	private LinkedList<BlankCell> neighbors = new LinkedList<BlankCell>();
+	// the blank neighbors of this cell, bit u of neighborUnits[i] is set if
+	// the i-th neighbor is in units[u]. A list since the rater deep-clones 
+	// cells, which is much slower for arrays of objects; the primitive 
+	// arrays are copied whole, see Rater#createCloner().
+	private List<BlankCell> neighbors;
+	private int[] neighborUnits;
+	// the candidates of every unit left to this cell alone, reused by 
+	// hasHiddenSingle
+	private final long[] unitCandidates;
 	
 	private int refutationScore;
 
@@ -54,26 +67,23 @@ class BlankCell {
 	 * position.
 	 * @param row Row of this cell. 
 	 * @param column Column of this cell.
+	 * @param solution The value of this cell in the solution.
+	 * @param units The units of this cell as given by 
+	 * {@link topology.Topology#getUnits(int)}.
+	 * @param size The number of values, e.g. 9 for a standard Sudoku.
+	 * @param peerCount The number of peers of this cell.
 	 */
-	protected BlankCell(int row, int column, int solution) {
+	protected BlankCell(int row, int column, int solution, int[] units, 
+			int size, int peerCount) {
 		this.row = row;
 		this.column = column;
-		block = this.initBlock();
 		this.solution = solution;
-		
-		initCandidates();
-	}
-
-	private int initBlock() {
-		int x = (int) (column / 3);
-		int y = (int) (row / 3);
-		return x + y * 3;
-	}
-	
-	private void initCandidates() {
-		candidates = new BitSet(9);
-		candidates.set(0, 9); // every candidate allowed
-		candidateCount = 9;
+		this.units = units;
+		neighbors = new ArrayList<BlankCell>(peerCount);
+		neighborUnits = new int[peerCount];
+		unitCandidates = new long[units.length];
+		candidates = (1L << size) - 1; // every candidate allowed
+		candidateCount = size;
 	}
 	
 	/**
@@ -88,40 +98,46 @@ class BlankCell {
 	
 	/**
 	 * Determines if this cell contains a "hidden single", meaning that this
-	 * cell is the only cell in its row, column or block which can be filled
-	 * with some value. To return a correct value, every blank neighbor of
-	 * this cell has to be registered via 
+	 * cell is the only cell in one of its units (e.g. its row, column or 
+	 * block) which can be filled with some value. To return a correct value,
+	 * every blank neighbor of this cell has to be registered via 
 	 * {@link {@link BlankCell#assignNeighbor(BlankCell)}}
 	 * @return {@code true} if this cell contains a hidden single, 
 	 * {@code false} otherwise.
 	 */
 	protected boolean hasHiddenSingle() {
-		BitSet rowCandidates = (BitSet) candidates.clone();
-		BitSet colCandidates = (BitSet) candidates.clone();
-		BitSet blockCandidates = (BitSet) candidates.clone();
-		
-		for(BlankCell neighbor : neighbors) {
-			if(neighbor.row == this.row)
-				rowCandidates.andNot(neighbor.candidates);
-			if(neighbor.column == this.column)
-				colCandidates.andNot(neighbor.candidates);
-			if(neighbor.block == this.block)
-				blockCandidates.andNot(neighbor.candidates);
+		for(int u = 0; u < units.length; u++)
+			unitCandidates[u] = candidates;
+		// one pass over the neighbors, each in one or two common units
+		for(int i = 0; i < neighbors.size(); i++) {
+			long neighborCandidates = neighbors.get(i).candidates;
+			for(int shared = neighborUnits[i]; shared != 0; 
+					shared &= shared - 1)
+				unitCandidates[Integer.numberOfTrailingZeros(shared)] &= 
+						~neighborCandidates;
 		}
-
-		return rowCandidates.cardinality() == 1
-				|| colCandidates.cardinality() == 1
-				|| blockCandidates.cardinality() == 1;
+		for(int u = 0; u < units.length; u++)
+			if(Long.bitCount(unitCandidates[u]) == 1)
+				return true;
+		return false;
 	}
 
 	/**
 	 * Use this method to let this cell know about one of its neighbors.
 	 * Knowing about all neighbors is crucial to determine if this cell contains
 	 * a hidden single.
-	 * @param neighbor A blank cell that resides in the same row, column or
-	 * block.
+	 * @param neighbor A blank cell that shares a unit with this cell.
 	 */
 	protected void assignNeighbor(BlankCell neighbor) {
+		int shared = 0;
+		for(int u = 0; u < units.length; u++)
+			for(int unit : neighbor.units)
+				if(unit == units[u])
+					shared |= 1 << u;
+		if(neighbors.size() == neighborUnits.length) // more than expected
+			neighborUnits = Arrays.copyOf(neighborUnits, 
+					2 * neighborUnits.length + 1);
+		neighborUnits[neighbors.size()] = shared;
 		neighbors.add(neighbor);
 	}
 	
@@ -155,13 +171,13 @@ class BlankCell {
 	 */
 	protected void forbid(int value) {
 		if(candidate(value)) {
-			candidates.flip(value - 1);
+			candidates &= ~(1L << (value - 1));
 			--candidateCount;
 		}
 	}
 	
 	private boolean candidate(int value) {
-		return candidates.get(value - 1);
+		return (candidates & 1L << (value - 1)) != 0;
 	}
 	
 	/**
@@ -170,7 +186,12 @@ class BlankCell {
 	 * @param neighbor A neighbor of this cell.
 	 */
 	protected void removeNeighbor(BlankCell neighbor) {
-		neighbors.remove(neighbor);
+		int i = neighbors.indexOf(neighbor);
+		if(i < 0)
+			return;
+		neighbors.remove(i);
+		System.arraycopy(neighborUnits, i + 1, neighborUnits, i, 
+				neighbors.size() - i);
 	}
 	
 	/**
@@ -192,9 +213,11 @@ class BlankCell {
 	protected int[] getWrongCandidates() {
 		int[] wrongCandidates = new int[candidateCount - 1];
 		int index = 0;
-		for(int value = 1; value <= 9; value++)
-			if(candidate(value) && value != solution)
+		for(long mask = candidates; mask != 0; mask &= mask - 1) {
+			int value = Long.numberOfTrailingZeros(mask) + 1;
+			if(value != solution)
 				wrongCandidates[index++] = value;
+		}
 		return wrongCandidates;
 	}
 	
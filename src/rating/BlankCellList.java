@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Stack;
 
 import solver.SudokuProblem;
+import topology.Topology;
+import utile.SudokuIO;
 
 /**
  * Represents a list of empty cells in a Sudoku instance. Provides functionality
@@ -60,49 +62,50 @@ class BlankCellList {
 	
 	private void init(int[][] puzzle, int[][] solution) {
 		this.solution = solution;
-		findBlankCells(puzzle);
-		initForbiddenValues(puzzle);
-		assignNeighborCells();
+		Topology topology = 
+				Topology.getClassic(SudokuIO.getBoxSize(puzzle.length));
+		BlankCell[] grid = findBlankCells(puzzle, topology);
+		initForbiddenValues(puzzle, topology, grid);
+		assignNeighborCells(topology, grid);
 		// shuffle cells for a random ordering of naked and hidden singles.
 		Collections.shuffle(advanced);
 		spotSingles();
 	}
 
-	private void findBlankCells(int[][] instance) {
-		for(int row = 0; row < 9; row++)
-			for(int col = 0; col < 9; col++)
-				if(instance[row][col] == 0)
-					advanced.add(new BlankCell(row, col, solution[row][col]));
+	// returns the blank cells by cell index, null for givens
+	private BlankCell[] findBlankCells(int[][] instance, Topology topology) {
+		BlankCell[] grid = new BlankCell[topology.getCellCount()];
+		for(int index = 0; index < grid.length; index++) {
+			int row = topology.getRow(index);
+			int col = topology.getColumn(index);
+			if(instance[row][col] == 0) {
+				grid[index] = new BlankCell(row, col, solution[row][col], 
+						topology.getUnits(index), topology.getSize(), 
+						topology.getPeers(index).length);
+				advanced.add(grid[index]);
+			}
+		}
+		return grid;
 	}
 	
-	private void initForbiddenValues(int[][] instance) {
-		for(BlankCell cell : advanced) {
-			for(int col = 0; col < 9; col++)
-				if(instance[cell.row][col] != 0)
-					cell.forbid(instance[cell.row][col]);
-			
-			for(int row = 0; row < 9; row++)
-				if(instance[row][cell.column] != 0)
-					cell.forbid(instance[row][cell.column]);
-			
-			int blockStartRow = (cell.row / 3) * 3;
-			int blockStartCol = (cell.column / 3) * 3;
-			for(int row = blockStartRow; row < blockStartRow + 3; row++)
-				for(int col = blockStartCol; col < blockStartCol + 3; col++) {
-					if(instance[row][col] != 0)
-						cell.forbid(instance[row][col]);
+	private void initForbiddenValues(int[][] instance, Topology topology, 
+			BlankCell[] grid) {
+		for(int index = 0; index < grid.length; index++)
+			if(grid[index] != null)
+				for(int peer : topology.getPeers(index)) {
+					int value = instance[topology.getRow(peer)]
+							[topology.getColumn(peer)];
+					if(value != 0)
+						grid[index].forbid(value);
 				}
-		}
 	}
 
-	private void assignNeighborCells() {
-		for(BlankCell cell : advanced)
-			for(BlankCell otherCell : advanced)
-				if(cell != otherCell)
-					if(cell.row == otherCell.row 
-					|| cell.column == otherCell.column
-					|| cell.block == otherCell.block)
-						cell.assignNeighbor(otherCell);
+	private void assignNeighborCells(Topology topology, BlankCell[] grid) {
+		for(int index = 0; index < grid.length; index++)
+			if(grid[index] != null)
+				for(int peer : topology.getPeers(index))
+					if(grid[peer] != null)
+						grid[index].assignNeighbor(grid[peer]);
 	}
 	
 	private void spotSingles() {
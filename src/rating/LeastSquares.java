@@ -0,0 +1,121 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package rating;
+
+/**
+ * Fits a linear model y = b0 + b1 * x1 + ... + bk * xk by ordinary least
+ * squares. Observations are added one by one and only the normal equations
+ * X'X b = X'y and the sum of the squared responses are kept, so any number
+ * of observations fits in constant memory.
+ * @author robert
+ *
+ */
+class LeastSquares {
+
+	// number of coefficients including the intercept
+	private final int k;
+	private final double[][] xtx;
+	private final double[] xty;
+	private double yty = 0;
+	private long count = 0;
+	
+	/**
+	 * Creates an empty fit.
+	 * @param variables The number of explanatory variables, not counting
+	 * the intercept.
+	 */
+	LeastSquares(int variables) {
+		k = variables + 1;
+		xtx = new double[k][k];
+		xty = new double[k];
+	}
+	
+	/**
+	 * Adds an observation.
+	 * @param y The response, e.g. a solve time.
+	 * @param x The explanatory variables of the observation.
+	 */
+	void add(double y, double... x) {
+		for(int i = 0; i < k; i++) {
+			double xi = i == 0 ? 1 : x[i - 1];
+			xty[i] += xi * y;
+			for(int j = 0; j < k; j++)
+				xtx[i][j] += xi * (j == 0 ? 1 : x[j - 1]);
+		}
+		yty += y * y;
+		count++;
+	}
+	
+	long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Solves the normal equations by Gaussian elimination with partial 
+	 * pivoting.
+	 * @return The coefficients, the intercept first, or {@code null} if 
+	 * there are too few observations or the variables are collinear.
+	 */
+	double[] solve() {
+		if(count < k)
+			return null;
+		double[][] a = new double[k][k + 1];
+		for(int i = 0; i < k; i++) {
+			System.arraycopy(xtx[i], 0, a[i], 0, k);
+			a[i][k] = xty[i];
+		}
+		for(int col = 0; col < k; col++) {
+			int pivot = col;
+			for(int row = col + 1; row < k; row++)
+				if(Math.abs(a[row][col]) > Math.abs(a[pivot][col]))
+					pivot = row;
+			if(Math.abs(a[pivot][col]) < 1e-9 * Math.max(1, xtx[0][0]))
+				return null; // singular
+			double[] temp = a[col];
+			a[col] = a[pivot];
+			a[pivot] = temp;
+			for(int row = 0; row < k; row++)
+				if(row != col) {
+					double factor = a[row][col] / a[col][col];
+					for(int i = col; i <= k; i++)
+						a[row][i] -= factor * a[col][i];
+				}
+		}
+		double[] b = new double[k];
+		for(int i = 0; i < k; i++)
+			b[i] = a[i][k] / a[i][i];
+		return b;
+	}
+	
+	/**
+	 * Computes the standard deviation of the residuals of a fit from the 
+	 * normal equations, i.e. without revisiting the observations.
+	 * @param b The coefficients returned by {@link LeastSquares#solve()}.
+	 * @return The residual standard error.
+	 */
+	double getResidualError(double[] b) {
+		// SSE = y'y - 2 b'X'y + b'X'X b
+		double sse = yty;
+		for(int i = 0; i < k; i++) {
+			sse -= 2 * b[i] * xty[i];
+			for(int j = 0; j < k; j++)
+				sse += b[i] * xtx[i][j] * b[j];
+		}
+		return Math.sqrt(Math.max(sse, 0) / Math.max(count - k, 1));
+	}
+}
@@ -18,8 +18,17 @@
 package rating;
 
 import java.util.List;
+import java.util.Map;
+
+import monitoring.Metrics;
+import monitoring.RateEvent;
+import solver.SearchLimit;
+import solver.SearchStatistics;
+import solver.SudokuProblem;
+import utile.SudokuIO;
 
 import com.rits.cloning.Cloner;
+import com.rits.cloning.IFastCloner;
 
 /**
  * Provides functionality to rate a Sudoku instance according to its difficulty.
@@ -42,29 +51,37 @@ public class Rater {
 	private int averageDependencyMetric = 0;
 	
 	private final int RUNS = 30;
+	private int runsCompleted = 0;
+	// false if the puzzle was solved without finding a solution
+	private boolean solvable = true;
+	
+	private SearchLimit limit;
+	
+	// cells filled in the current run, the depth of the rating search
+	private int filledCells = 0;
+	private SearchStatistics statistics = new SearchStatistics();
 	
 	/**
 	 * Initializes a new rater for a given Sudoku puzzle.
 	 * @param puzzle A 9x9 integer array representing an unsolved Sudoku.
 	 */
 	public Rater(int[][] puzzle) {
-		// rate several times and build the average rating
-		for(int run = 0; run < RUNS; run++) {
-			blankCells = new BlankCellList(puzzle);
-			ratePuzzle();
-			
-			averageRefutationSum += refutationSum;
-			averageDependencyMetric += 
-					Math.round(dependencySum / DEPENDENCY_STEPS);
-			
-			currentCopyIndex = 0;
-			refutationSum = 0;
-			dependencyStep = 1;
-			dependencySum = 0;
-		}
-		
-		averageRefutationSum = Math.round(averageRefutationSum / RUNS);
-		averageDependencyMetric = Math.round(averageDependencyMetric / RUNS);
+		this(puzzle, new SearchLimit());
+	}
+	
+	/**
+	 * Initializes a new rater for a given Sudoku puzzle and stops rating as
+	 * soon as the provided limit is exhausted.
+	 * @param puzzle A 9x9 integer array representing an unsolved Sudoku.
+	 * @param limit Cancels the rating or restricts its time budget.
+	 */
+	public Rater(int[][] puzzle, SearchLimit limit) {
+		this.limit = limit;
+		SudokuProblem problem = new SudokuProblem(puzzle, limit, 1);
+		statistics.add(problem.getStatistics());
+		solvable = problem.hasSolution() || !problem.isComplete();
+		if(problem.hasSolution())
+			rate(puzzle, problem.getSolution());
 	}
 	
 	/**
@@ -73,14 +90,38 @@ public class Rater {
 	 * @param solution The solution to the provided puzzle.
 	 */
 	public Rater(int[][] puzzle, int[][] solution) {
+		this(puzzle, solution, new SearchLimit());
+	}
+	
+	/**
+	 * Initializes a new rater for a given Sudoku puzzle and stops rating as
+	 * soon as the provided limit is exhausted.
+	 * @param puzzle A 9x9 integer array representing an unsolved Sudoku.
+	 * @param solution The solution to the provided puzzle.
+	 * @param limit Cancels the rating or restricts its time budget.
+	 */
+	public Rater(int[][] puzzle, int[][] solution, SearchLimit limit) {
+		this.limit = limit;
+		rate(puzzle, solution);
+	}
+	
+	private void rate(int[][] puzzle, int[][] solution) {
+		long start = System.nanoTime();
+		RateEvent event = new RateEvent();
+		event.begin();
 		// rate several times and build the average rating
-		for(int run = 0; run < RUNS; run++) {
+		for(int run = 0; run < RUNS && !limit.isExhausted(); run++) {
 			blankCells = new BlankCellList(puzzle, solution);
+			filledCells = 0;
 			ratePuzzle();
 			
-			averageRefutationSum += refutationSum;
-			averageDependencyMetric += 
-					Math.round(dependencySum / DEPENDENCY_STEPS);
+			if(blankCells.filled()) { // only count runs that were finished
+				averageRefutationSum += refutationSum;
+				averageDependencyMetric += 
+						Math.round(dependencySum / DEPENDENCY_STEPS);
+				runsCompleted++;
+				statistics.countSearch();
+			}
 			
 			currentCopyIndex = 0;
 			refutationSum = 0;
@@ -88,12 +129,28 @@ public class Rater {
 			dependencySum = 0;
 		}
 		
-		averageRefutationSum = Math.round(averageRefutationSum / RUNS);
-		averageDependencyMetric = Math.round(averageDependencyMetric / RUNS);
+		if(runsCompleted > 0) {
+			averageRefutationSum = 
+					Math.round(averageRefutationSum / runsCompleted);
+			averageDependencyMetric = 
+					Math.round(averageDependencyMetric / runsCompleted);
+		}
+		long elapsed = System.nanoTime() - start;
+		statistics.addTime(elapsed);
+		Metrics.record(Metrics.RATE, elapsed);
+		
+		event.end();
+		if(event.shouldCommit()) {
+			event.puzzle = SudokuIO.getShort(puzzle);
+			event.runs = runsCompleted;
+			event.refutationSum = averageRefutationSum;
+			event.dependencyMetric = averageDependencyMetric;
+			event.commit();
+		}
 	}
 
 	private void ratePuzzle() {
-		while(!blankCells.filled()) { // Sudoku not solved.
+		while(!blankCells.filled() && !limit.isExhausted()) { // Sudoku not solved.
 			fillInSingles();
 
 			if(!blankCells.filled()) // advanced technique required.
@@ -105,6 +162,7 @@ public class Rater {
 		while(blankCells.hasSingleCell()) {
 			updateDependency();
 			blankCells.fillSingleCell();
+			statistics.countNode(filledCells++);
 		}
 	}
 	
@@ -120,12 +178,15 @@ public class Rater {
 		
 		makeCopies(); // copies of blankCells. Needed when refuting candidates.
 		for(BlankCell cell : advancedCells) {
+			if(limit.isExhausted()) // run is discarded anyway
+				return;
 			refuteWrongCandidates(cell);
 
 			if(cell.getRefutationScore() < minCell.getRefutationScore())
 				minCell = cell;
 		} // found the cell with the minimal refutation score
 		blankCells.fill(minCell);
+		statistics.countNode(filledCells++);
 		
 		++dependencyStep;
 		refutationSum = refutationSum + minCell.getRefutationScore();
@@ -137,12 +198,37 @@ public class Rater {
 			copyCount += advancedCell.wrongCandidateCount();
 		copies = new BlankCellList[copyCount];
 		
-		Cloner cloner = new Cloner();
-		while(copyCount > 0)
+		Cloner cloner = createCloner();
+		while(copyCount > 0 && !limit.isExhausted())
 			copies[--copyCount] = cloner.deepClone(blankCells);
 		currentCopyIndex = 0;
 	}
 	
+	/**
+	 * Creates the cloner for the copies. The library copies arrays element
+	 * by element through reflection, even primitive ones, which made the
+	 * unit masks of the blank cells the bulk of the rating time; the
+	 * primitive arrays are therefore copied with {@code clone()}.
+	 */
+	static Cloner createCloner() {
+		Cloner cloner = new Cloner();
+		cloner.registerFastCloner(int[].class, new IFastCloner() {
+			@Override
+			public Object clone(Object array, Cloner cloner,
+					Map<Object, Object> clones) {
+				return ((int[]) array).clone();
+			}
+		});
+		cloner.registerFastCloner(long[].class, new IFastCloner() {
+			@Override
+			public Object clone(Object array, Cloner cloner,
+					Map<Object, Object> clones) {
+				return ((long[]) array).clone();
+			}
+		});
+		return cloner;
+	}
+	
 	private void refuteWrongCandidates(BlankCell cell) {
 		int[] wrongCandidates = cell.getWrongCandidates();
 		for(int candidate : wrongCandidates) {
@@ -153,10 +239,13 @@ public class Rater {
 			while(copy.isConsistent() && copy.hasSingleCell()) {
 				copy.fillSingleCell();
 				++step;
+				statistics.countNode(filledCells + step);
 			}
 			
-			if(!copy.isConsistent())
+			if(!copy.isConsistent()) {
 				cell.refute(step);
+				statistics.countDeadEnd();
+			}
 			else
 				cell.refute();
 		}
@@ -166,6 +255,41 @@ public class Rater {
 		return copies[currentCopyIndex++];
 	}
 	
+	/**
+	 * Checks if every rating run was finished. If the search limit was
+	 * exhausted, the rating is averaged over the finished runs only.
+	 * @return {@code true} if the rating is complete, {@code false} otherwise.
+	 */
+	public boolean isComplete() {
+		return runsCompleted == RUNS;
+	}
+	
+	/**
+	 * Checks if the puzzle has a solution. Unsolvable puzzles are not rated,
+	 * so no run is completed, just as if the limit stopped the rating early.
+	 * @return {@code false} if the puzzle has no solution, {@code true} if 
+	 * it has one or the limit stopped the search for it.
+	 */
+	public boolean hasSolution() {
+		return solvable;
+	}
+	
+	public int getRunsCompleted() {
+		return runsCompleted;
+	}
+	
+	/**
+	 * Gets the statistics of the rating. Each finished run counts as a search,
+	 * each filled cell as a node, both in the actual run and while refuting
+	 * wrong candidates. Refuted candidates count as dead ends. The depth is 
+	 * the number of cells filled in a run plus the singles of a refutation.
+	 * Candidate eliminations are not counted by the rater.
+	 * @return The statistics of this rating.
+	 */
+	public SearchStatistics getStatistics() {
+		return statistics;
+	}
+	
 	public int getRefutationSum() {
 		return averageRefutationSum;
 	}
@@ -174,24 +298,13 @@ public class Rater {
 		return averageDependencyMetric;
 	}
 
+	/**
+	 * Estimates the time a human needs to solve the puzzle, see 
+	 * {@link TimeModel#getInstalled()}.
+	 * @return The estimated time in minutes.
+	 */
 	public int getEstimatedTime() {
-		if(this.getRefutationSum() == 0) { // no advanced techniques required
-			// values from next line obtained via linear regression over
-			// a set of 715 puzzles where no advanced techniques were
-			// required.
-			double solveTime = 
-					26.361323 - 1.130103 * this.getDependencyMetric();
-			return (int) Math.round(solveTime);
-		}
-		else { // advanced technique required
-			// linear regression with manually removed outliers:
-			double solveTime = 37.931241053 
-					+ 0.09396403 * (double) this.getRefutationSum()
-					- 1.08375558 * (double) this.getDependencyMetric();
-			// without outlier removal:  
-			// (Intercept)          ref          dep 
-			// 37.931241053  0.006577984 -1.515772855 
-			return (int) Math.round(solveTime);
-		}
+		return (int) Math.round(TimeModel.getInstalled().estimate(
+				getRefutationSum(), getDependencyMetric()));
 	}
 }
@@ -0,0 +1,285 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package rating;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+/**
+ * Estimates the time a human needs to solve a puzzle from its rating. 
+ * Puzzles that need no advanced techniques are estimated from the number 
+ * of singles per step alone, the others from the difficulty of the 
+ * advanced techniques as well:
+ * <p>
+ * time = e0 + e1 * dep, if ref = 0 <br/>
+ * time = h0 + h1 * ref + h2 * dep, otherwise
+ * <p>
+ * The coefficients are fitted by least squares to a training table as 
+ * printed by {@link utile.SudokuIO#createTrainingTable(String)}, see
+ * {@link TimeModel#fit(File, double)}, and saved to a coefficient file. 
+ * {@link Rater} uses the model of the file given by the system property 
+ * "sudoku.timemodel", by default "time-model.txt" in the working 
+ * directory, and the built-in coefficients if there is no such file.
+ * @author robert
+ *
+ */
+public final class TimeModel {
+
+	// fitted offline over 715 puzzles without advanced techniques and, with
+	// manually removed outliers, over the puzzles with advanced techniques
+	private static final double[] DEFAULT_EASY = {26.361323, -1.130103};
+	private static final double[] DEFAULT_HARD = 
+		{37.931241053, 0.09396403, -1.08375558};
+	
+	private static TimeModel installed;
+	
+	private final double[] easy;
+	private final double[] hard;
+	// false for coefficients that keep their default
+	private final boolean easyFitted;
+	private final boolean hardFitted;
+	
+	private TimeModel(double[] easy, double[] hard, boolean easyFitted, 
+			boolean hardFitted) {
+		this.easy = easy;
+		this.hard = hard;
+		this.easyFitted = easyFitted;
+		this.hardFitted = hardFitted;
+	}
+	
+	/**
+	 * Gets the model with the built-in coefficients.
+	 * @return The default model.
+	 */
+	public static TimeModel getDefault() {
+		return new TimeModel(DEFAULT_EASY, DEFAULT_HARD, false, false);
+	}
+	
+	/**
+	 * Gets the model that {@link Rater} uses. The coefficient file is read
+	 * on the first call. If it can't be read, a warning is printed and the
+	 * built-in coefficients are used.
+	 * @return The installed model.
+	 */
+	public static synchronized TimeModel getInstalled() {
+		if(installed == null) {
+			File file = new File(
+					System.getProperty("sudoku.timemodel", "time-model.txt"));
+			installed = getDefault();
+			if(file.isFile())
+				try {
+					installed = load(file);
+				} catch (IOException | IllegalArgumentException e) {
+					System.err.println("Ignoring time model " + file + ": " 
+							+ e.getMessage());
+				}
+		}
+		return installed;
+	}
+	
+	/**
+	 * Estimates the solve time of a puzzle.
+	 * @param refutationSum The difficulty of the advanced techniques, see 
+	 * {@link Rater#getRefutationSum()}.
+	 * @param dependencyMetric The average number of singles per step, see
+	 * {@link Rater#getDependencyMetric()}.
+	 * @return The estimated time in minutes.
+	 */
+	public double estimate(int refutationSum, int dependencyMetric) {
+		if(refutationSum == 0) // no advanced techniques required
+			return easy[0] + easy[1] * dependencyMetric;
+		return hard[0] + hard[1] * refutationSum + hard[2] * dependencyMetric;
+	}
+	
+	/**
+	 * Fits a model to a training table with the columns tme, ref and dep,
+	 * separated by tabs or spaces. Lines that don't start with a number, 
+	 * e.g. the header, are skipped. The table is streamed and the fit keeps
+	 * only the normal equations, so tables of any length fit in constant
+	 * memory.
+	 * <p>
+	 * Outliers are trimmed by reading the table a second time: an 
+	 * observation is dropped if its residual under the first fit exceeds 
+	 * the given multiple of the residual standard error, and the model is
+	 * fitted to the remaining observations.
+	 * @param table The training table.
+	 * @param trim The residual in standard errors beyond which observations
+	 * are dropped, e.g. 3, or 0 to keep every observation.
+	 * @return The fitted model. Coefficients that can't be fitted, e.g. for
+	 * lack of puzzles without advanced techniques, keep their default, see
+	 * {@link TimeModel#toString()}.
+	 * @throws IOException The table can't be read.
+	 * @throws IllegalArgumentException A line of the table is malformed or
+	 * neither group of puzzles has enough observations to fit it.
+	 */
+	public static TimeModel fit(File table, double trim) throws IOException {
+		LeastSquares easyFit = new LeastSquares(1);
+		LeastSquares hardFit = new LeastSquares(2);
+		read(table, null, 0, 0, easyFit, hardFit);
+		TimeModel model = toModel(easyFit, hardFit);
+		if(!model.easyFitted && !model.hardFitted)
+			throw new IllegalArgumentException("Too few observations in " 
+					+ table + " to fit the model");
+		if(trim <= 0)
+			return model;
+		
+		double easyError = trim * getError(easyFit, model.easy);
+		double hardError = trim * getError(hardFit, model.hard);
+		easyFit = new LeastSquares(1);
+		hardFit = new LeastSquares(2);
+		read(table, model, easyError, hardError, easyFit, hardFit);
+		return toModel(easyFit, hardFit);
+	}
+	
+	private static TimeModel toModel(LeastSquares easyFit, 
+			LeastSquares hardFit) {
+		double[] easy = easyFit.solve();
+		double[] hard = hardFit.solve();
+		return new TimeModel(easy == null ? DEFAULT_EASY : easy,
+				hard == null ? DEFAULT_HARD : hard, easy != null, 
+				hard != null);
+	}
+	
+	private static double getError(LeastSquares fit, double[] coefficients) {
+		if(fit.getCount() <= coefficients.length)
+			return Double.POSITIVE_INFINITY; // too few to find outliers
+		return fit.getResidualError(coefficients);
+	}
+	
+	// adds the observations of the table to the fits, dropping those with
+	// residuals beyond the maximum errors under the reference model
+	private static void read(File table, TimeModel reference, 
+			double maxEasyError, double maxHardError, LeastSquares easyFit,
+			LeastSquares hardFit) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(table));
+		try {
+			int lineNumber = 0;
+			for(String line = reader.readLine(); line != null; 
+					line = reader.readLine()) {
+				lineNumber++;
+				String[] columns = line.trim().split("\\s+");
+				if(!columns[0].matches("-?[0-9.]+"))
+					continue; // header or empty line
+				if(columns.length < 3)
+					throw new IllegalArgumentException("Line " + lineNumber 
+							+ " has less than three columns");
+				double time;
+				int ref;
+				int dep;
+				try {
+					time = Double.parseDouble(columns[0]);
+					ref = Integer.parseInt(columns[1]);
+					dep = Integer.parseInt(columns[2]);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Line " + lineNumber 
+							+ " is malformed: " + line, e);
+				}
+				if(reference != null && Math.abs(time 
+						- reference.estimate(ref, dep)) 
+						> (ref == 0 ? maxEasyError : maxHardError))
+					continue; // outlier
+				if(ref == 0)
+					easyFit.add(time, dep);
+				else
+					hardFit.add(time, ref, dep);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Writes the coefficients of this model to a file that 
+	 * {@link TimeModel#load(File)} can read.
+	 * @param file The coefficient file.
+	 * @throws IOException The file can't be written.
+	 */
+	public void save(File file) throws IOException {
+		Properties coefficients = new Properties();
+		String[] easyNames = {"easy.intercept", "easy.dep"};
+		String[] hardNames = {"hard.intercept", "hard.ref", "hard.dep"};
+		for(int i = 0; i < easy.length; i++)
+			coefficients.setProperty(easyNames[i], String.valueOf(easy[i]));
+		for(int i = 0; i < hard.length; i++)
+			coefficients.setProperty(hardNames[i], String.valueOf(hard[i]));
+		Writer writer = new FileWriter(file);
+		try {
+			coefficients.store(writer, "Coefficients of the solve time "
+					+ "estimate, see rating.TimeModel");
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * Reads a model from a coefficient file written by 
+	 * {@link TimeModel#save(File)}.
+	 * @param file The coefficient file.
+	 * @return The model.
+	 * @throws IOException The file can't be read.
+	 * @throws IllegalArgumentException A coefficient is missing or not a
+	 * number.
+	 */
+	public static TimeModel load(File file) throws IOException {
+		Properties coefficients = new Properties();
+		Reader reader = new FileReader(file);
+		try {
+			coefficients.load(reader);
+		} finally {
+			reader.close();
+		}
+		return new TimeModel(
+				new double[] {
+						get(coefficients, "easy.intercept"), 
+						get(coefficients, "easy.dep")},
+				new double[] {
+						get(coefficients, "hard.intercept"), 
+						get(coefficients, "hard.ref"),
+						get(coefficients, "hard.dep")}, true, true);
+	}
+	
+	private static double get(Properties coefficients, String name) {
+		String value = coefficients.getProperty(name);
+		if(value == null)
+			throw new IllegalArgumentException("Missing coefficient " + name);
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Coefficient " + name 
+					+ " is not a number: " + value, e);
+		}
+	}
+
+	/**
+	 * Describes the model by its two equations, each marked "(default)" if
+	 * its coefficients are the built-in ones.
+	 */
+	@Override
+	public String toString() {
+		return "ref = 0: time = " + easy[0] + " + " + easy[1] + " * dep"
+				+ (easyFitted ? "" : " (default)") + "\n"
+				+ "ref > 0: time = " + hard[0] + " + " + hard[1] + " * ref + "
+				+ hard[2] + " * dep" + (hardFitted ? "" : " (default)");
+	}
+}
@@ -0,0 +1,248 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Searches for the solutions of a Sudoku like the chronological backtracking
+ * of {@link SudokuProblem}, but jumps back to the culprit of a dead end.
+ * <p>
+ * Every node of the search computes its conflict set: the levels of the
+ * assignments above it that together leave no solution below it. The
+ * levels come from the eliminations that {@link BlankCellList} records for
+ * every value it removes. If the assignment of a node isn't part of the
+ * conflict set of the node below, trying the other alternatives of the node
+ * is futile and the search returns to the deepest level of the conflict 
+ * set right away. A node whose subtree contains a solution depends on every
+ * level above it, so solutions are still counted exactly.
+ * <p>
+ * The conflict set of an exhausted node is a nogood. Short nogoods are kept
+ * in a bounded {@link NogoodStore} and prune the alternatives that would 
+ * complete them elsewhere in the search.
+ * @author robert
+ *
+ */
+class BackjumpingSearch {
+	
+	// longer nogoods rarely occur again
+	private static final int MAX_NOGOOD_LENGTH = 12;
+	private static final int NOGOOD_CAPACITY = 4096;
+	
+	private final BlankCellList blankCells;
+	private final int[][] solution;
+	private final SearchLimit limit;
+	private final int maxSolutions;
+	private final SearchStatistics statistics;
+	private final int size;
+	
+	// conflicts[depth] is the conflict set of the node at the depth
+	private final long[][] conflicts;
+	// the assignment of every level, the level of every assigned cell and
+	// the literals of the assignments, see NogoodStore
+	private final BlankCell[] decisionCells;
+	private final int[] decisionValues;
+	private final int[] levels;
+	private final boolean[] assigned;
+	private final NogoodStore nogoods;
+	
+	private long nodeLimit;
+	private int solutionCount = 0;
+	private boolean complete = true;
+	
+	/**
+	 * Prepares a search over the blank cells of a Sudoku.
+	 * @param blankCells The blank cells, which have to be consistent.
+	 * @param solution The grid that receives the values of the first 
+	 * solution.
+	 * @param cellCount The number of cells of the topology.
+	 * @param size The number of values.
+	 * @param limit Cancels the search or restricts its time budget.
+	 * @param maxSolutions The search stops after finding this many solutions.
+	 * @param statistics Counts the work of the search.
+	 */
+	protected BackjumpingSearch(BlankCellList blankCells, int[][] solution, 
+			int cellCount, int size, SearchLimit limit, int maxSolutions, 
+			SearchStatistics statistics) {
+		this.blankCells = blankCells;
+		this.solution = solution;
+		this.size = size;
+		this.limit = limit;
+		this.maxSolutions = maxSolutions;
+		this.statistics = statistics;
+		int depths = blankCells.size() + 1;
+		conflicts = new long[depths][(depths + 63) / 64];
+		decisionCells = new BlankCell[depths];
+		decisionValues = new int[depths];
+		levels = new int[cellCount];
+		assigned = new boolean[cellCount * size];
+		nogoods = new NogoodStore(cellCount, size, NOGOOD_CAPACITY);
+	}
+	
+	/**
+	 * Runs the search. The search can be run again, e.g. with a larger node
+	 * limit, and keeps the nogoods it learned before.
+	 * @param nodeLimit The search stops when the statistics count this many
+	 * nodes.
+	 */
+	protected void run(long nodeLimit) {
+		this.nodeLimit = nodeLimit;
+		solutionCount = 0;
+		complete = true;
+		search(0);
+	}
+	
+	private void search(int depth) {
+		long[] conflict = conflicts[depth];
+		Arrays.fill(conflict, 0);
+		if(blankCells.isEmpty()) { // value assigned to every cell
+			solutionCount++;
+			if(solutionCount == 1)
+				for(int level = 0; level < depth; level++)
+					solution[decisionCells[level].getRow()]
+							[decisionCells[level].getCol()] = decisionValues[level];
+			if(solutionCount >= maxSolutions) // enough solutions found
+				complete = false;
+			addLevels(conflict, depth); // no level may be skipped
+			return;
+		}
+		if(limit.poll() || statistics.getNodes() >= nodeLimit) {
+			complete = false; // give up and keep what was found so far
+			return;
+		}
+		
+		int alternatives = blankCells.selectBranch(depth);
+		statistics.countNode(depth);
+		if(alternatives == 0) {
+			statistics.countDeadEnd();
+			blankCells.explainBranch(depth, conflict);
+			return;
+		}
+		
+		int lastSolutionCount = solutionCount;
+		for(int i = 0; i < alternatives; i++) {
+			BlankCell currentCell = blankCells.getBranchCell(depth, i);
+			int value = blankCells.getBranchValue(depth, i);
+			int cell = currentCell.getCell();
+			int literal = cell * size + value - 1;
+			
+			// skip the alternative if it completes a learned nogood, which
+			// is due to the levels of the nogood's other assignments
+			int[] nogood = nogoods.find(literal, assigned);
+			if(nogood != null) {
+				statistics.countNogoodPruning();
+				for(int other : nogood)
+					if(other != literal)
+						addLevel(conflict, levels[other / size]);
+				continue;
+			}
+			
+			int mark = blankCells.assign(currentCell, value);
+			statistics.countEliminations(blankCells.getEliminations(mark));
+			decisionCells[depth] = currentCell;
+			decisionValues[depth] = value;
+			assigned[literal] = true;
+			levels[cell] = depth;
+			
+			search(depth + 1);
+			
+			assigned[literal] = false;
+			blankCells.unassign(currentCell, value, mark);
+			if(!complete) // search was stopped further down
+				return;
+			
+			long[] below = conflicts[depth + 1];
+			if(!containsLevel(below, depth)) {
+				// the dead end below doesn't depend on this level, so none
+				// of the other alternatives can avoid it
+				System.arraycopy(below, 0, conflict, 0, conflict.length);
+				statistics.countBackjump();
+				return;
+			}
+			for(int word = 0; word < conflict.length; word++)
+				conflict[word] |= below[word];
+		}
+		
+		// every alternative failed because of the levels below this one or
+		// the eliminations that ruled out the other alternatives
+		removeLevel(conflict, depth);
+		blankCells.explainBranch(depth, conflict);
+		if(solutionCount == lastSolutionCount)
+			learn(conflict);
+	}
+	
+	// stores the assignments of the levels of a conflict set as nogood
+	private void learn(long[] conflict) {
+		int length = 0;
+		for(long word : conflict)
+			length += Long.bitCount(word);
+		if(length == 0 || length > MAX_NOGOOD_LENGTH)
+			return;
+		int[] nogood = new int[length];
+		int i = 0;
+		for(int word = 0; word < conflict.length; word++)
+			for(long mask = conflict[word]; mask != 0; mask &= mask - 1) {
+				int level = word * 64 + Long.numberOfTrailingZeros(mask);
+				nogood[i++] = decisionCells[level].getCell() * size 
+						+ decisionValues[level] - 1;
+			}
+		nogoods.add(nogood);
+	}
+	
+	/**
+	 * Adds a level to a set of levels.
+	 * @param set A bit set with bit l of word l / 64 set for every level l.
+	 * @param level The level to add.
+	 */
+	protected static void addLevel(long[] set, int level) {
+		set[level >> 6] |= 1L << level;
+	}
+	
+	/**
+	 * Adds every level below a bound to a set of levels.
+	 * @param set A bit set with bit l of word l / 64 set for every level l.
+	 * @param count The levels from 0 to count - 1 are added.
+	 */
+	protected static void addLevels(long[] set, int count) {
+		for(int word = 0; word < count >> 6; word++)
+			set[word] = -1L;
+		if((count & 63) != 0)
+			set[count >> 6] |= (1L << count) - 1;
+	}
+	
+	private static boolean containsLevel(long[] set, int level) {
+		return (set[level >> 6] & 1L << level) != 0;
+	}
+	
+	private static void removeLevel(long[] set, int level) {
+		set[level >> 6] &= ~(1L << level);
+	}
+	
+	protected int getSolutionCount() {
+		return solutionCount;
+	}
+	
+	/**
+	 * Checks if the search ran to the end.
+	 * @return {@code false} if the limit was exhausted or the maximum number
+	 * of solutions was found.
+	 */
+	protected boolean isComplete() {
+		return complete;
+	}
+}
@@ -17,12 +17,11 @@
 
 package solver;
 
-import java.util.LinkedList;
-import java.util.List;
-
 /**
- * Represents a blank cell in a standard 9x9 Sudoku game. Blank cells are 
- * variable and can take any value from 1 to 9.
+ * Represents a blank cell in a Sudoku grid of size N x N, N being the square
+ * of the box size. Blank cells are variable and can take any value from 1 to
+ * N. The valid values are stored as bit mask, bit v - 1 being set if value v
+ * is valid.
  * @author robert
  *
  */
@@ -30,25 +29,29 @@ class BlankCell {
 
 	private int row;
 	private int col;
-	private int block;
+	private int cell;
+	
+	private long validValues;
+	private int validValueCount;
 	
-	// validationTable[v - 1] is false when value v is valid for this cell
-	private boolean[] validationTable = new boolean[9];
-	private int validValueCount = 0;
+	// position of this cell in the list of blank cells, see BlankCellList
+	int position;
 	
 	/**
-	 * A blank cell is identified by its row, column and the block it resides
-	 * in.
+	 * A blank cell is identified by its row and column. Initially every value
+	 * from 1 to size is valid.
 	 * @param row The row of the cell in the corresponding Sudoku grid.
 	 * @param col The column of the cell in the corresponding Sudoku grid.
-	 * @param block The Block of the cell in the corresponding Sudoku grid.
-	 * Blocks are numbered from 0 to 8, counting from left to right and top to
-	 * bottom.
+	 * @param cell The index of the cell in the topology of the grid, see
+	 * {@link topology.Topology#getCell(int, int)}.
+	 * @param size The number of values, e.g. 9 for a standard Sudoku.
 	 */
-	protected BlankCell(int row, int col, int block) {
+	protected BlankCell(int row, int col, int cell, int size) {
 		this.row = row;
 		this.col = col;
-		this.block = block;
+		this.cell = cell;
+		this.validValues = (1L << size) - 1;
+		this.validValueCount = size;
 	}
 	
 	protected int getRow() {
@@ -59,34 +62,30 @@ class BlankCell {
 		return col;
 	}
 	
-	protected int getBlock() {
-		return block;
+	protected int getCell() {
+		return cell;
 	}
 	
 	/**
-	 * Gets a list of valid values for this cell. Initially every value from 1
-	 * to 9 is a valid value. The list of valid values can be altered via
+	 * Gets the valid values for this cell. Initially every value is valid.
+	 * The valid values can be altered via 
 	 * {@link BlankCell#addValidValue(int)} and 
 	 * {@link BlankCell#invalidateValue(int)}.
-	 * @return Returns a {@link List} containing all valid values for this
-	 * cell.
+	 * @return A bit mask with bit v - 1 set for every valid value v. Iterate
+	 * over it via {@link Long#numberOfTrailingZeros(long)}.
 	 */
-	protected List<Integer> getValidValues() {
-		List<Integer> validValues = new LinkedList<Integer>();
-		for(int value = 1; value <= 9; value++)
-			if(!validationTable[value - 1])
-				validValues.add(value);
+	protected long getValidValues() {
 		return validValues;
 	}
 	
 	/**
-	 * Add a valid value from 1 to 9 to the list of valid values. Valid values
-	 * should be those that don't already occur in the same row, column or
-	 * block.
-	 * @param value A value from 1 to 9.
+	 * Add a valid value to the list of valid values. Valid values should be
+	 * those that don't already occur in the same row, column or block. The
+	 * value must not be valid already.
+	 * @param value A value from 1 to size.
 	 */
 	protected void addValidValue(int value) {
-		validationTable[value - 1] = false;
+		validValues |= 1L << (value - 1);
 		validValueCount++;
 	}
 	
@@ -94,21 +93,22 @@ class BlankCell {
 	 * Removes a value from the list of valid values. This method should be 
 	 * called if another cell in the same row, column or block is filled with
 	 * a value and that value thus becomes invalid for this cell.
-	 * @param value A value from 1 to 9.
+	 * @param value A value from 1 to size.
 	 * @return Returns {@code true} if the list of valid values contained the
 	 * provided value and thus was changed and {@code false} otherwise.
 	 */
 	protected boolean invalidateValue(int value) {
-		if(validationTable[value - 1]) // value already invalid
+		long bit = 1L << (value - 1);
+		if((validValues & bit) == 0) // value already invalid
 			return false;
-		validationTable[value - 1] = true;
+		validValues &= ~bit;
 		validValueCount--;
 		return true;
 	}
 	
 	/**
 	 * Determines the number of valid values for this cell.
-	 * @return The length of the list of valid values.
+	 * @return The number of bits set in the mask of valid values.
 	 */
 	protected int getValidValueCount() {
 		return validValueCount;
@@ -116,13 +116,15 @@ class BlankCell {
 
 	@Override
 	public String toString() {
-		List<Integer> validValues = new LinkedList<Integer>();
-		for(int value = 1; value <= 9; value++)
-			if(!validationTable[value - 1])
-				validValues.add(value);
+		StringBuilder values = new StringBuilder("[");
+		for(long mask = validValues; mask != 0; mask &= mask - 1) {
+			if(values.length() > 1)
+				values.append(", ");
+			values.append(Long.numberOfTrailingZeros(mask) + 1);
+		}
 		return "(" + row + ", " 
 					+ col + ", " 
-					+ block + "): " 
-					+ validValues.toString();
+					+ cell + "): " 
+					+ values.append("]");
 	}
 }
@@ -17,98 +17,639 @@
 
 package solver;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
+
+import topology.Cage;
+import topology.Topology;
+import utile.SudokuIO;
 
 /**
- * A list that holds blank cells of a standard 9x9 Sudoku grid.
+ * A list that holds the blank cells of a Sudoku grid. Which cells constrain
+ * each other is given by the {@link Topology} of the grid, e.g. the rows,
+ * columns and blocks of a standard N x N grid. Besides the valid values of
+ * every cell, the list counts for every unit and value how many unassigned
+ * cells of the unit may still take the value. The next branching of a 
+ * search either tries every valid value of the most constrained cell or
+ * every cell of the most constrained unit and value, see
+ * {@link BlankCellList#selectBranch(int)}.
+ * <p>
+ * The list is backed by arrays and does not allocate memory once created:
+ * assigned cells are moved behind the unassigned cells, and values 
+ * invalidated in peers are recorded on a trail so they can be restored
+ * via {@link BlankCellList#unassign(BlankCell, int, int)}.
+ * <p>
+ * If the topology has killer cages, the values that can't complete a cage 
+ * anymore are removed from its cells whenever a cell of the cage is 
+ * assigned or loses a value. They are looked up in a {@link CageTable}.
+ * <p>
+ * Every removed value remembers the level of the assignment that removed
+ * it, i.e. the number of cells assigned before. A search that backjumps
+ * can ask why a branching has no more alternatives via
+ * {@link BlankCellList#explainBranch(int, long[])}.
  * @author robert
  *
  */
 class BlankCellList {
 
-	private List<BlankCell> blankCells = new LinkedList<BlankCell>();
+	private final int size;
+	
+	// precomputed by the topology
+	private final int[][] units;
+	private final int[][] cellUnits;
+	private final int[][] peers;
+	
+	// grid[cell] is the blank cell with that index or null for givens
+	private final BlankCell[] grid;
+	// the first count cells are unassigned, the others are assigned
+	private final BlankCell[] cells;
+	private int count = 0;
+	private final int initialCount;
+	
+	// unitCounts[unit * size + value - 1] is the number of unassigned cells
+	// in the unit that may take the value, placed[...] is the number of cells
+	// in the unit that contain the value (0 or 1 in a consistent grid).
+	private final int[] unitCounts;
+	private final int[] placed;
+	// false if a given is no value from 1 to size
+	private boolean givensInRange = true;
+	
+	// cells whose valid values were changed by assign and the values they
+	// lost
+	private final BlankCell[] trail;
+	private final int[] trailValues;
+	private int trailSize = 0;
+	
+	// reasons[cell * size + value - 1] is the level of the assignment that
+	// invalidated the value in the cell, -1 for givens. Values removed by
+	// cage pruning are flagged as DERIVED, since they depend on every
+	// earlier assignment.
+	private static final int DERIVED = 1 << 30;
+	private final int[] reasons;
+	private int level = -1;
+	
+	// killer cages: cellCages[cell] is the index of the cell's cage or -1,
+	// cageSums, cageCells and cageValues hold the sum of the unassigned 
+	// cells, their number and the assigned values of every cage
+	private final int[][] cages;
+	private final int[] cellCages;
+	private final int[] cageSums;
+	private final int[] cageCells;
+	private final long[] cageValues;
+	private final CageTable cageTable;
+	// cages whose cells lost values since they were pruned last
+	private final int[] dirtyCages;
+	private final boolean[] dirty;
+	private int dirtyCount = 0;
+	
+	// branchCells[depth][i] gets assigned branchValues[depth][i] by the i-th
+	// alternative of the branching at the given depth
+	private final BlankCell[][] branchCells;
+	private final int[][] branchValues;
+	// the unit and value of a branching as index into unitCounts or -1 if
+	// the values of branchCells[depth][0] are tried
+	private final int[] branchUnits;
+	// the heuristics of every branching and the weights of the units for 
+	// dom/wdeg
+	private Branching branching = Branching.MRV;
+	private ValueOrder order = ValueOrder.ASCENDING;
+	private Random random;
+	private int[] unitWeights;
+	private final int[] losses;
 	
 	/**
-	 * Creates a list of the blank cells in the provided sudoku grid.
-	 * @param sudoku A 9x9 Sudoku grid with values from 0 to 9, 0 meaning
+	 * Creates a list of the blank cells in the provided standard Sudoku grid.
+	 * @param sudoku A N x N Sudoku grid with values from 0 to N, 0 meaning
 	 * that the cell at the corresponding position is empty (and thus will
-	 * be part of this list).
+	 * be part of this list). N has to be the square of a box size.
 	 */
 	protected BlankCellList(int[][] sudoku) {
-		for(int row = 0; row < 9; row++)
-			for(int col = 0; col < 9; col++)
-				if(sudoku[row][col] == 0) { // blank cell
-					int block = getBlock(row, col);
-					blankCells.add(new BlankCell(row, col, block));
-				}
-		initValidValues(sudoku);
-	}
-	
-	private int getBlock(int row, int col) {
-		int x = (int) (col / 3);
-		int y = (int) (row / 3);
-		return x + y * 3;
-	}
-	
-	private void initValidValues(int[][] sudoku) {
-		// Go through each initially filled cell in the Sudoku grid and check
-		// for all blank cells if they are in the same row, column or block. If 
-		// that is the case, delete the value of the filled cell from the list 
-		// of valid values for the blank cell.
-		for(int row = 0; row < 9; row++)
-			for(int col = 0; col < 9; col++)
-				if(sudoku[row][col] != 0) { // filled cell
-					for(BlankCell c : blankCells) {
-						boolean inSameRow = row == c.getRow();
-						boolean inSameCol = col == c.getCol();
-						boolean inSameBlock = getBlock(row, col) == c.getBlock();
-						if(inSameRow || inSameCol || inSameBlock)
-							c.invalidateValue(sudoku[row][col]);
-					}
-				}
+		this(sudoku, Topology.getClassic(SudokuIO.getBoxSize(sudoku.length)));
+	}
+	
+	/**
+	 * Creates a list of the blank cells in the provided Sudoku grid.
+	 * @param sudoku A grid with the rows and columns of the topology and
+	 * values from 0 to the topology's size, 0 meaning that the cell at the
+	 * corresponding position is empty (and thus will be part of this list).
+	 * Cells that the topology doesn't contain are ignored.
+	 * @param topology The units and peers of the grid's cells.
+	 */
+	protected BlankCellList(int[][] sudoku, Topology topology) {
+		size = topology.getSize();
+		int cellCount = topology.getCellCount();
+		units = new int[topology.getUnitCount()][];
+		for(int unit = 0; unit < units.length; unit++)
+			units[unit] = topology.getUnit(unit);
+		cellUnits = new int[cellCount][];
+		peers = new int[cellCount][];
+		grid = new BlankCell[cellCount];
+		cells = new BlankCell[cellCount];
+		for(int index = 0; index < cellCount; index++) {
+			cellUnits[index] = topology.getUnits(index);
+			peers[index] = topology.getPeers(index);
+			int row = topology.getRow(index);
+			int col = topology.getColumn(index);
+			if(sudoku[row][col] == 0 && topology.contains(index)) { // blank
+				BlankCell cell = new BlankCell(row, col, index, size);
+				cell.position = count;
+				cells[count++] = cell;
+				grid[index] = cell;
+			}
+		}
+		initialCount = count;
+		unitCounts = new int[units.length * size];
+		reasons = new int[cellCount * size];
+		placed = new int[units.length * size];
+		
+		Cage[] topologyCages = topology.getCages();
+		cages = new int[topologyCages.length][];
+		cellCages = new int[cellCount];
+		Arrays.fill(cellCages, -1);
+		cageSums = new int[cages.length];
+		cageCells = new int[cages.length];
+		cageValues = new long[cages.length];
+		int maxCageSize = 0;
+		for(int cage = 0; cage < cages.length; cage++) {
+			cages[cage] = topologyCages[cage].getCells();
+			cageSums[cage] = topologyCages[cage].getSum();
+			cageCells[cage] = cages[cage].length;
+			maxCageSize = Math.max(maxCageSize, cages[cage].length);
+			for(int index : cages[cage])
+				cellCages[index] = cage;
+		}
+		cageTable = cages.length > 0 ? CageTable.get(size) : null;
+		dirtyCages = new int[cages.length];
+		dirty = new boolean[cages.length];
+		
+		// every assignment invalidates a value in at most all peers and 
+		// every value in the other cells of its cage
+		int trailLength = count * (topology.getMaxPeerCount() 
+				+ maxCageSize * size);
+		trail = new BlankCell[trailLength];
+		trailValues = new int[trailLength];
+		branchCells = new BlankCell[count][size];
+		branchValues = new int[count][size];
+		branchUnits = new int[count];
+		losses = new int[size];
+		initValidValues(sudoku, topology);
+	}
+	
+	private void initValidValues(int[][] sudoku, Topology topology) {
+		// initially every blank cell of a unit may take every value
+		for(int i = 0; i < count; i++)
+			for(int value = 1; value <= size; value++)
+				countValue(cells[i], value, 1);
+		
+		// Go through each initially filled cell in the Sudoku grid and delete
+		// its value from the valid values of its blank peers.
+		for(int index = 0; index < grid.length; index++) {
+			int value = sudoku[topology.getRow(index)][topology.getColumn(index)];
+			if(value < 0 || value > size) {
+				givensInRange = false;
+				continue;
+			}
+			if(value != 0) { // filled cell
+				invalidateInPeers(index, value);
+				for(int unit : cellUnits[index])
+					placed[index(unit, value)]++;
+				if(cellCages[index] >= 0)
+					addToCage(cellCages[index], value);
+			}
+		}
+		for(int cage = 0; cage < cages.length; cage++)
+			markDirty(cage);
+		pruneCages();
+		trailSize = 0; // givens are never restored
+	}
+	
+	private int index(int unit, int value) {
+		return unit * size + value - 1;
+	}
+	
+	// adds delta to the counts of the value in the units of the cell
+	private void countValue(BlankCell cell, int value, int delta) {
+		for(int unit : cellUnits[cell.getCell()])
+			unitCounts[index(unit, value)] += delta;
+	}
+	
+	// adds delta to the number of cells containing the value in every unit
+	private void place(BlankCell cell, int value, int delta) {
+		for(int unit : cellUnits[cell.getCell()])
+			placed[index(unit, value)] += delta;
 	}
 	
 	protected boolean isEmpty() {
-		return blankCells.isEmpty();
+		return count == 0;
 	}
 	
 	/**
-	 * Removes and returns the cell with the least valid values of the list
-	 * of blank cells. Make sure that this list is not empty before you call
-	 * this method.
-	 * @return The cell with the least valid values.
+	 * Gets the number of unassigned cells, which is also the largest depth
+	 * a search can reach.
+	 * @return The number of cells that have no value yet.
 	 */
-	protected BlankCell removeMostConstrainedCell() {
-		BlankCell mostConstrained = blankCells.get(0);
-		for(BlankCell c : blankCells) {
-			if(c.getValidValueCount() < mostConstrained.getValidValueCount())
-				mostConstrained = c;
+	protected int size() {
+		return count;
+	}
+	
+	/**
+	 * Checks if the givens of the Sudoku grid are consistent, i.e. they are
+	 * values from 1 to N and no value occurs twice in a unit.
+	 * @return {@code true} if the givens are consistent, {@code false} if 
+	 * the grid has no solution because of the givens.
+	 */
+	protected boolean isConsistent() {
+		if(!givensInRange)
+			return false;
+		for(int i = 0; i < placed.length; i++)
+			if(placed[i] > 1)
+				return false;
+		for(int cage = 0; cage < cages.length; cage++)
+			if(cageCells[cage] == 0 && cageSums[cage] != 0)
+				return false; // the givens of the cage miss its sum
+		return true;
+	}
+	
+	/**
+	 * Selects the most constrained choice of the search: Either the cell with
+	 * the least valid values, or a unit and a value that fewer cells of the
+	 * unit may take. The alternatives of the choice can be obtained via
+	 * {@link BlankCellList#getBranchCell(int, int)} and
+	 * {@link BlankCellList#getBranchValue(int, int)}. Make sure that this 
+	 * list is not empty before you call this method.
+	 * @param depth The number of assigned cells. Alternatives are stored per
+	 * depth, so the alternatives of shallower branchings stay available.
+	 * @return The number of alternatives. 0 if some cell or unit can't be
+	 * completed.
+	 */
+	protected int selectBranch(int depth) {
+		BlankCell mostConstrained = branching == Branching.MRV 
+				? selectCell() : selectCell(branching);
+		int alternatives = mostConstrained.getValidValueCount();
+		
+		// look for a value that fewer cells of some unit may take
+		int bestUnitValue = -1;
+		if(alternatives > 1)
+			for(int i = 0; i < unitCounts.length; i++)
+				if(placed[i] == 0 && unitCounts[i] < alternatives) {
+					bestUnitValue = i;
+					alternatives = unitCounts[i];
+					if(alternatives <= 1)
+						break;
+				}
+		
+		BlankCell[] candidates = branchCells[depth];
+		int[] values = branchValues[depth];
+		branchUnits[depth] = bestUnitValue;
+		if(bestUnitValue < 0) { // try every value of the cell
+			candidates[0] = mostConstrained; // even without alternatives
+			int i = 0;
+			for(long mask = mostConstrained.getValidValues(); mask != 0; 
+					mask &= mask - 1) {
+				candidates[i] = mostConstrained;
+				values[i++] = Long.numberOfTrailingZeros(mask) + 1;
+			}
+		}
+		else { // try every cell of the unit that may take the value
+			int[] unit = units[bestUnitValue / size];
+			int value = bestUnitValue % size + 1;
+			long bit = 1L << (value - 1);
+			int i = 0;
+			for(int k = 0; k < unit.length && i < alternatives; k++) {
+				BlankCell cell = grid[unit[k]]; // null for givens
+				if(cell != null && cell.position < count 
+						&& (cell.getValidValues() & bit) != 0) {
+					candidates[i] = cell;
+					values[i++] = value;
+				}
+			}
+		}
+		if(alternatives == 0 && branching == Branching.DOM_WDEG)
+			addWeights(mostConstrained, bestUnitValue);
+		if(order != ValueOrder.ASCENDING)
+			orderBranch(candidates, values, alternatives);
+		return alternatives;
+	}
+	
+	// the first cell with the fewest valid values
+	private BlankCell selectCell() {
+		BlankCell mostConstrained = cells[0];
+		for(int i = 1; i < count; i++) {
+			if(mostConstrained.getValidValueCount() <= 1)
+				break; // no cell can be more constrained
+			if(cells[i].getValidValueCount() < mostConstrained.getValidValueCount())
+				mostConstrained = cells[i];
 		}
-		blankCells.remove(mostConstrained);
 		return mostConstrained;
 	}
 	
+	// the best cell by the provided heuristic
+	private BlankCell selectCell(Branching branching) {
+		BlankCell best = cells[0];
+		int bestScore = score(best, branching);
+		int ties = 1;
+		for(int i = 1; i < count; i++) {
+			if(best.getValidValueCount() <= 1)
+				break; // singles and dead ends are taken right away
+			BlankCell cell = cells[i];
+			if(cell.getValidValueCount() > best.getValidValueCount() 
+					&& branching != Branching.DOM_WDEG)
+				continue;
+			int score = score(cell, branching);
+			int comparison = compare(cell, score, best, bestScore, branching);
+			if(comparison == 0 && branching == Branching.MRV_RANDOM
+					&& random.nextInt(++ties) == 0)
+				comparison = -1; // reservoir sampling over the ties
+			if(comparison < 0) {
+				if(cell.getValidValueCount() < best.getValidValueCount())
+					ties = 1;
+				best = cell;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+	
+	// the number of unassigned peers or the weight of the units of a cell
+	private int score(BlankCell cell, Branching branching) {
+		int score = 0;
+		if(branching == Branching.MRV_DEGREE)
+			for(int peer : peers[cell.getCell()]) {
+				if(grid[peer] != null && grid[peer].position < count)
+					score++;
+			}
+		else if(branching == Branching.DOM_WDEG)
+			for(int unit : cellUnits[cell.getCell()])
+				score += unitWeights[unit];
+		return score;
+	}
+	
+	// negative if the cell is preferred to the other cell
+	private int compare(BlankCell cell, int score, BlankCell other, 
+			int otherScore, Branching branching) {
+		if(branching == Branching.DOM_WDEG) // compare the ratios dom/wdeg
+			return Long.signum((long) cell.getValidValueCount() * otherScore 
+					- (long) other.getValidValueCount() * score);
+		if(cell.getValidValueCount() != other.getValidValueCount())
+			return cell.getValidValueCount() - other.getValidValueCount();
+		return branching == Branching.MRV_DEGREE ? otherScore - score : 0;
+	}
+	
+	// weighs the units of a dead end, either those of the cell without 
+	// valid values or the unit where no cell may take a value
+	private void addWeights(BlankCell cell, int unitValue) {
+		if(unitValue >= 0)
+			unitWeights[unitValue / size]++;
+		else
+			for(int unit : cellUnits[cell.getCell()])
+				unitWeights[unit]++;
+	}
+	
 	/**
-	 * Gets the neighbors of a given cell. Each cell that resides in the same
-	 * column, row or block as the provided cell is considered as neighbor. The
-	 * provided cell doesn't have to be part of this cell list.
-	 * @param cell An arbitrary blank cell.
-	 * @return Every neighbor of the provided cell that is part of this list.
+	 * Sets how {@link BlankCellList#selectBranch(int)} picks the cell of a
+	 * branching and in which order it returns the alternatives. 
+	 * {@link Branching#MRV} and ascending by default.
+	 * @param branching The heuristic that picks the cell.
+	 * @param order The order of the alternatives.
+	 * @param random The random generator of random tie breaks and orders.
 	 */
-	protected List<BlankCell> getNeighbors(BlankCell cell) {
-		List<BlankCell> neighbours = new LinkedList<BlankCell>();
-		for(BlankCell c : blankCells) {
-			boolean inSameRow = c.getRow() == cell.getRow();
-			boolean inSameCol = c.getCol() == cell.getCol();
-			boolean inSameBlock = c.getBlock() == cell.getBlock();
-			if(inSameRow || inSameCol || inSameBlock)
-				neighbours.add(c);
+	protected void setHeuristics(Branching branching, ValueOrder order, 
+			Random random) {
+		this.branching = branching;
+		this.order = order;
+		this.random = random;
+		if(branching == Branching.DOM_WDEG && unitWeights == null) {
+			unitWeights = new int[units.length];
+			Arrays.fill(unitWeights, 1);
+		}
+	}
+	
+	private void orderBranch(BlankCell[] candidates, int[] values, 
+			int alternatives) {
+		if(order == ValueOrder.RANDOM) // Fisher-Yates shuffle
+			for(int i = alternatives - 1; i > 0; i--)
+				swap(candidates, values, i, random.nextInt(i + 1));
+		else if(order == ValueOrder.LEAST_CONSTRAINING) {
+			// insertion sort by the number of peers that lose the value
+			for(int i = 0; i < alternatives; i++) {
+				losses[i] = countLosses(candidates[i], values[i]);
+				for(int j = i; j > 0 && losses[j] < losses[j - 1]; j--) {
+					swap(candidates, values, j, j - 1);
+					int loss = losses[j];
+					losses[j] = losses[j - 1];
+					losses[j - 1] = loss;
+				}
+			}
+		}
+		else // descending
+			for(int i = 0; i < alternatives / 2; i++)
+				swap(candidates, values, i, alternatives - 1 - i);
+	}
+	
+	// the number of unassigned peers of the cell that may take the value
+	private int countLosses(BlankCell cell, int value) {
+		long bit = 1L << (value - 1);
+		int losses = 0;
+		for(int index : peers[cell.getCell()]) {
+			BlankCell peer = grid[index];
+			if(peer != null && peer.position < count 
+					&& (peer.getValidValues() & bit) != 0)
+				losses++;
+		}
+		return losses;
+	}
+	
+	private void swap(BlankCell[] candidates, int[] values, int i, int j) {
+		BlankCell cell = candidates[i];
+		candidates[i] = candidates[j];
+		candidates[j] = cell;
+		int value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+	
+	protected BlankCell getBranchCell(int depth, int alternative) {
+		return branchCells[depth][alternative];
+	}
+	
+	protected int getBranchValue(int depth, int alternative) {
+		return branchValues[depth][alternative];
+	}
+	
+	/**
+	 * Assigns a value to an unassigned cell: removes the cell from the list
+	 * of unassigned cells and invalidates the value in every unassigned peer
+	 * of the cell.
+	 * @param cell An unassigned cell.
+	 * @param value A valid value of the cell.
+	 * @return A mark to pass to 
+	 * {@link BlankCellList#unassign(BlankCell, int, int)}.
+	 */
+	protected int assign(BlankCell cell, int value) {
+		int mark = trailSize;
+		level = initialCount - count;
+		// swap the cell behind the last unassigned cell
+		BlankCell last = cells[--count];
+		cells[cell.position] = last;
+		last.position = cell.position;
+		cells[count] = cell;
+		cell.position = count;
+		
+		for(long mask = cell.getValidValues(); mask != 0; mask &= mask - 1)
+			countValue(cell, Long.numberOfTrailingZeros(mask) + 1, -1);
+		place(cell, value, 1);
+		invalidateInPeers(cell.getCell(), value);
+		int cage = cellCages[cell.getCell()];
+		if(cage >= 0) {
+			addToCage(cage, value);
+			markDirty(cage);
+		}
+		pruneCages();
+		return mark;
+	}
+	
+	/**
+	 * Undoes the last assignment. Every assignment made after it has to be
+	 * undone before.
+	 * @param cell The cell of the last assignment.
+	 * @param value The value of the last assignment.
+	 * @param mark The mark returned by the last assignment.
+	 */
+	protected void unassign(BlankCell cell, int value, int mark) {
+		while(trailSize > mark) {
+			BlankCell peer = trail[--trailSize];
+			int lostValue = trailValues[trailSize];
+			peer.addValidValue(lostValue);
+			countValue(peer, lostValue, 1);
+		}
+		int cage = cellCages[cell.getCell()];
+		if(cage >= 0) { // reverse addToCage
+			cageSums[cage] += value;
+			cageCells[cage]++;
+			cageValues[cage] &= ~(1L << (value - 1));
+		}
+		place(cell, value, -1);
+		for(long mask = cell.getValidValues(); mask != 0; mask &= mask - 1)
+			countValue(cell, Long.numberOfTrailingZeros(mask) + 1, 1);
+		count++; // the cell is the first assigned cell
+	}
+	
+	/**
+	 * Gets the number of values invalidated by assignments since a mark.
+	 * @param mark A mark returned by 
+	 * {@link BlankCellList#assign(BlankCell, int)}.
+	 * @return The number of valid values removed from peers and cages.
+	 */
+	protected int getEliminations(int mark) {
+		return trailSize - mark;
+	}
+	
+	private void invalidateInPeers(int cell, int value) {
+		for(int peer : peers[cell])
+			invalidate(grid[peer], value, level);
+	}
+	
+	private void invalidate(BlankCell peer, int value, int reason) {
+		if(peer != null && peer.position < count // unassigned
+				&& peer.invalidateValue(value)) {
+			countValue(peer, value, -1);
+			reasons[peer.getCell() * size + value - 1] = reason;
+			trailValues[trailSize] = value;
+			trail[trailSize++] = peer;
+			if(cellCages[peer.getCell()] >= 0)
+				markDirty(cellCages[peer.getCell()]);
+		}
+	}
+	
+	private void markDirty(int cage) {
+		if(!dirty[cage]) {
+			dirty[cage] = true;
+			dirtyCages[dirtyCount++] = cage;
+		}
+	}
+	
+	// prunes dirty cages until no cell of a cage loses a value anymore
+	private void pruneCages() {
+		while(dirtyCount > 0) {
+			int cage = dirtyCages[--dirtyCount];
+			dirty[cage] = false;
+			pruneCage(cage);
+		}
+	}
+	
+	private void addToCage(int cage, int value) {
+		cageSums[cage] -= value;
+		cageCells[cage]--;
+		cageValues[cage] |= 1L << (value - 1);
+	}
+	
+	// removes the values that can't complete the cage from its cells
+	private void pruneCage(int cage) {
+		if(cageCells[cage] == 0)
+			return;
+		// values no unassigned cell can take are as good as used
+		long available = 0;
+		for(int index : cages[cage]) {
+			BlankCell cell = grid[index];
+			if(cell != null && cell.position < count)
+				available |= cell.getValidValues();
+		}
+		long unavailable = ((1L << size) - 1) & ~available;
+		long candidates = cageTable.getCandidates(cageCells[cage], 
+				cageSums[cage], cageValues[cage] | unavailable);
+		for(int index : cages[cage]) {
+			BlankCell cell = grid[index];
+			if(cell == null || cell.position >= count) // given or assigned
+				continue;
+			for(long mask = cell.getValidValues() & ~candidates; mask != 0; 
+					mask &= mask - 1)
+				invalidate(cell, Long.numberOfTrailingZeros(mask) + 1, 
+						level < 0 ? level : level | DERIVED);
+		}
+	}
+	
+	/**
+	 * Explains why the branching at the given depth has no alternatives
+	 * besides those returned by {@link BlankCellList#selectBranch(int)}: 
+	 * adds the levels of the assignments that removed the other values of
+	 * the branching's cell, or that removed the value from the other cells
+	 * of the branching's unit, to a set of levels. Every assignment below 
+	 * the branching has to be undone before.
+	 * @param depth The depth of the branching.
+	 * @param conflict A bit set with bit l set for every level l, see
+	 * {@link BackjumpingSearch#addLevel(long[], int)}.
+	 */
+	protected void explainBranch(int depth, long[] conflict) {
+		if(branchUnits[depth] < 0) { // cell branching
+			BlankCell cell = branchCells[depth][0];
+			long missing = ((1L << size) - 1) & ~cell.getValidValues();
+			for(; missing != 0; missing &= missing - 1)
+				explain(cell.getCell(), Long.numberOfTrailingZeros(missing) + 1, 
+						conflict);
+			return;
+		}
+		int value = branchUnits[depth] % size + 1;
+		long bit = 1L << (value - 1);
+		for(int index : units[branchUnits[depth] / size]) {
+			BlankCell cell = grid[index];
+			if(cell == null) // given with another value
+				continue;
+			if(cell.position >= count) // assigned another value
+				BackjumpingSearch.addLevel(conflict, 
+						initialCount - 1 - cell.position);
+			else if((cell.getValidValues() & bit) == 0)
+				explain(index, value, conflict);
 		}
-		return neighbours;
 	}
 	
-	protected void add(BlankCell cell) {
-		blankCells.add(cell);
+	// adds the level that removed the value from the cell
+	private void explain(int cell, int value, long[] conflict) {
+		int reason = reasons[cell * size + value - 1];
+		if(reason < 0) // removed by a given
+			return;
+		if((reason & DERIVED) != 0) // removed by cage pruning
+			BackjumpingSearch.addLevels(conflict, (reason & ~DERIVED) + 1);
+		else
+			BackjumpingSearch.addLevel(conflict, reason);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+/**
+ * The heuristic that picks the cell a search branches on. Every heuristic
+ * prefers cells with few valid values and only differs in how it weighs 
+ * them against each other. Whatever cell is picked, the search branches on
+ * a unit and a value instead if fewer cells of the unit may take the value
+ * than the cell has valid values.
+ * @author robert
+ *
+ */
+public enum Branching {
+	
+	/** The cell with the fewest valid values (minimum remaining values), 
+	 * the first one found on ties. */
+	MRV,
+	/** The cell with the fewest valid values, on ties the one with the 
+	 * most unassigned peers (degree). */
+	MRV_DEGREE,
+	/** The cell with the fewest valid values, on ties a random one. */
+	MRV_RANDOM,
+	/** The cell with the fewest valid values per weight of its units 
+	 * (dom/wdeg). The weight of a unit starts at 1 and grows with every 
+	 * dead end in it, so the search turns to the units that failed most. */
+	DOM_WDEG;
+	
+	/**
+	 * Parses the name of a heuristic, ignoring case and allowing dashes 
+	 * instead of underscores, e.g. "mrv-degree".
+	 * @param name The name of a heuristic.
+	 * @return The heuristic.
+	 * @throws IllegalArgumentException If there is no heuristic of that name.
+	 */
+	public static Branching parse(String name) {
+		return valueOf(name.trim().toUpperCase().replace('-', '_'));
+	}
+}
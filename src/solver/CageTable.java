@@ -0,0 +1,92 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+/**
+ * Holds for every number of cells, sum and set of used values the values
+ * that may still complete a killer cage. A value may complete a cage if it
+ * belongs to some combination of the given number of different, unused 
+ * values that adds up to the given sum. The table is computed once per 
+ * number of values, so pruning a cage is a lookup and a mask intersection.
+ * @author robert
+ *
+ */
+class CageTable {
+	
+	// tables grow with 3^size, so larger grids are not supported
+	protected static final int MAX_SIZE = 9;
+	
+	private static final CageTable[] tables = new CageTable[MAX_SIZE + 1];
+	
+	private final int size;
+	private final int maxSum;
+	// masks[((cells * (maxSum + 1)) + sum) << size | used] 
+	private final int[] masks;
+	
+	private CageTable(int size) {
+		this.size = size;
+		maxSum = size * (size + 1) / 2;
+		masks = new int[((size + 1) * (maxSum + 1)) << size];
+		int all = (1 << size) - 1;
+		// add every combination to the entries of the value sets it is
+		// disjoint with, i.e. the subsets of its complement
+		for(int combination = 0; combination <= all; combination++) {
+			int cells = Integer.bitCount(combination);
+			int sum = 0;
+			for(int mask = combination; mask != 0; mask &= mask - 1)
+				sum += Integer.numberOfTrailingZeros(mask) + 1;
+			int base = (cells * (maxSum + 1) + sum) << size;
+			int free = all & ~combination;
+			for(int used = free; ; used = (used - 1) & free) {
+				masks[base | used] |= combination;
+				if(used == 0)
+					break;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the table for the provided number of values.
+	 * @param size The number of values, at most {@link CageTable#MAX_SIZE}.
+	 * @return The shared table.
+	 */
+	protected static synchronized CageTable get(int size) {
+		if(size < 1 || size > MAX_SIZE)
+			throw new IllegalArgumentException("Cages are supported for up to " 
+					+ MAX_SIZE + " values");
+		if(tables[size] == null)
+			tables[size] = new CageTable(size);
+		return tables[size];
+	}
+	
+	/**
+	 * Gets the values that may complete a cage.
+	 * @param cells The number of unassigned cells of the cage.
+	 * @param sum The sum the unassigned cells have to add up to.
+	 * @param used A bit mask of the values assigned to the cage's cells, bit
+	 * v - 1 being set for value v.
+	 * @return A bit mask of the values that occur in some combination of
+	 * unused values with the number of cells and the sum, 0 if there is no
+	 * such combination.
+	 */
+	protected long getCandidates(int cells, int sum, long used) {
+		if(sum < 0 || sum > maxSum || cells > size)
+			return 0;
+		return masks[(cells * (maxSum + 1) + sum) << size | (int) used];
+	}
+}
@@ -0,0 +1,194 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import topology.Topology;
+import utile.SudokuIO;
+
+/**
+ * Checks if a puzzle is minimal, i.e. it has a unique solution and removing
+ * any single given allows another solution. The puzzle without a given is
+ * checked for every given at once on several threads. Each check stops as 
+ * soon as a second solution is found, which usually happens within a few
+ * nodes. Givens whose removal keeps the solution unique are reported as
+ * redundant.
+ * <p>
+ * {@link generator.Generator} removes givens in one order only, so its 
+ * puzzles are minimal for that order. Use this check to verify puzzles from 
+ * other sources.
+ * @author robert
+ *
+ */
+public class MinimalityCheck {
+
+	private boolean unique;
+	private boolean solvable;
+	private boolean complete = true;
+	private final List<Integer> redundantGivens = new ArrayList<Integer>();
+	private final SearchStatistics statistics = new SearchStatistics();
+	
+	/**
+	 * Checks if a standard Sudoku puzzle is minimal, using a thread for 
+	 * every available processor.
+	 * @param puzzle A N x N integer array with values from 0 to N, 0 
+	 * indicating that the cell at the corresponding position is blank.
+	 */
+	public MinimalityCheck(int[][] puzzle) {
+		this(puzzle, Topology.getClassic(SudokuIO.getBoxSize(puzzle.length)),
+				new SearchLimit(), Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Checks if a puzzle of a topology is minimal and stops as soon as the 
+	 * provided limit is exhausted.
+	 * @param puzzle A puzzle with the rows and columns of the topology, 0 
+	 * indicating that the cell at the corresponding position is blank.
+	 * @param topology The units and peers of the puzzle's cells.
+	 * @param limit Cancels the check or restricts its time budget, see
+	 * {@link MinimalityCheck#isComplete()}.
+	 * @param threads The number of uniqueness checks that run at once.
+	 */
+	public MinimalityCheck(final int[][] puzzle, final Topology topology, 
+			final SearchLimit limit, int threads) {
+		SudokuProblem problem = new SudokuProblem(puzzle, topology, limit, 2);
+		statistics.add(problem.getStatistics());
+		unique = problem.hasUniqueSolution();
+		solvable = problem.hasSolution();
+		if(!unique) {
+			// a second solution settles it even if the search was stopped
+			complete = problem.isComplete() 
+					|| problem.getNumberOfSolutions() >= 2;
+			return;
+		}
+		
+		List<Integer> givens = new ArrayList<Integer>();
+		List<Future<SudokuProblem>> checks = 
+				new ArrayList<Future<SudokuProblem>>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, 
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable task) {
+						Thread thread = new Thread(task, "minimality check");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			for(int cell = 0; cell < topology.getCellCount(); cell++) {
+				final int row = topology.getRow(cell);
+				final int col = topology.getColumn(cell);
+				if(puzzle[row][col] == 0 || !topology.contains(cell))
+					continue;
+				givens.add(cell);
+				checks.add(executor.submit(new Callable<SudokuProblem>() {
+					@Override
+					public SudokuProblem call() {
+						int[][] reduced = new int[puzzle.length][];
+						for(int i = 0; i < puzzle.length; i++)
+							reduced[i] = puzzle[i].clone();
+						reduced[row][col] = 0; // remove the given
+						return new SudokuProblem(reduced, topology, 
+								new SearchLimit(limit), 2);
+					}
+				}));
+			}
+			for(int i = 0; i < checks.size(); i++) {
+				SudokuProblem check = checks.get(i).get();
+				statistics.add(check.getStatistics());
+				if(check.hasUniqueSolution())
+					redundantGivens.add(givens.get(i));
+				else if(check.getNumberOfSolutions() < 2) // stopped early
+					complete = false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			complete = false;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A uniqueness check failed", 
+					e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Checks if the puzzle is minimal.
+	 * @return {@code true} if the puzzle has a unique solution and every
+	 * given is necessary.
+	 */
+	public boolean isMinimal() {
+		return unique && complete && redundantGivens.isEmpty();
+	}
+	
+	/**
+	 * Checks if the puzzle has a unique solution. The givens are only 
+	 * checked if it does.
+	 * @return {@code true} if the solution is unique.
+	 */
+	public boolean isUnique() {
+		return unique;
+	}
+	
+	/**
+	 * Checks if the puzzle has a solution at all, see 
+	 * {@link MinimalityCheck#isComplete()} for a stopped check.
+	 * @return {@code true} if a solution was found.
+	 */
+	public boolean hasSolution() {
+		return solvable;
+	}
+	
+	/**
+	 * Checks if every uniqueness check ran to the end. If the limit was 
+	 * exhausted before, the puzzle may have more redundant givens than 
+	 * reported.
+	 * @return {@code false} if the check was stopped early.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+	
+	/**
+	 * Gets the givens that can be removed without losing uniqueness. They
+	 * can't necessarily be removed all at once.
+	 * @return The cell indices of the redundant givens in ascending order,
+	 * see {@link Topology#getCell(int, int)}.
+	 */
+	public List<Integer> getRedundantGivens() {
+		return redundantGivens;
+	}
+	
+	/**
+	 * Gets the summed up statistics of the uniqueness checks. The checks 
+	 * overlap, so the wall time is the sum of their times and exceeds the
+	 * elapsed time if several threads were used.
+	 * @return The statistics of this check.
+	 */
+	public SearchStatistics getStatistics() {
+		return statistics;
+	}
+}
@@ -0,0 +1,104 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+/**
+ * Holds nogoods learned by a {@link BackjumpingSearch}: sets of assignments
+ * that can't be part of any solution. A nogood is a list of literals, the
+ * literal of assigning value v to the cell with index c being 
+ * c * size + v - 1. The store is bounded: once it is full, every new nogood
+ * replaces the oldest one. Every literal is watched by the latest nogoods
+ * that contain it, so checking an assignment looks at a few short lists.
+ * @author robert
+ *
+ */
+class NogoodStore {
+	
+	// nogoods watched per literal, older ones are forgotten by the literal
+	private static final int WATCHES = 4;
+	
+	// nogoods[slot] is overwritten in a cycle, stamps[slot] tells them apart
+	private final int[][] nogoods;
+	private final int[] stamps;
+	private int next = 0;
+	private int stamp = 0;
+	
+	// watchSlots[literal * WATCHES + i] is the slot of a nogood with the
+	// literal, valid as long as the slot's stamp equals watchStamps[...]
+	private final int[] watchSlots;
+	private final int[] watchStamps;
+	private final int[] watchNext;
+	
+	/**
+	 * Creates an empty store.
+	 * @param cellCount The number of cells of the topology.
+	 * @param size The number of values.
+	 * @param capacity The maximum number of nogoods kept.
+	 */
+	protected NogoodStore(int cellCount, int size, int capacity) {
+		nogoods = new int[capacity][];
+		stamps = new int[capacity];
+		watchSlots = new int[cellCount * size * WATCHES];
+		watchStamps = new int[watchSlots.length];
+		watchNext = new int[cellCount * size];
+	}
+	
+	/**
+	 * Adds a nogood, replacing the oldest one if the store is full.
+	 * @param literals The assignments that can't occur together.
+	 */
+	protected void add(int[] literals) {
+		int slot = next;
+		next = (next + 1) % nogoods.length;
+		nogoods[slot] = literals;
+		stamps[slot] = ++stamp;
+		for(int literal : literals) {
+			int watch = literal * WATCHES + watchNext[literal];
+			watchNext[literal] = (watchNext[literal] + 1) % WATCHES;
+			watchSlots[watch] = slot;
+			watchStamps[watch] = stamp;
+		}
+	}
+	
+	/**
+	 * Looks for a nogood that an assignment would complete.
+	 * @param literal The literal of the assignment.
+	 * @param assigned Tells for every literal if the assignment is made.
+	 * @return A nogood containing the literal whose other literals are all
+	 * assigned or {@code null} if there is none.
+	 */
+	protected int[] find(int literal, boolean[] assigned) {
+		for(int watch = literal * WATCHES; watch < (literal + 1) * WATCHES; 
+				watch++) {
+			int[] nogood = nogoods[watchSlots[watch]];
+			if(nogood == null || stamps[watchSlots[watch]] != watchStamps[watch])
+				continue; // empty or replaced
+			if(holds(nogood, literal, assigned))
+				return nogood;
+		}
+		return null;
+	}
+	
+	// checks if every literal besides the given one is assigned
+	private boolean holds(int[] nogood, int literal, boolean[] assigned) {
+		for(int other : nogood)
+			if(other != literal && !assigned[other])
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,186 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import topology.Topology;
+
+/**
+ * Solves a Sudoku with several strategies at once, each on a thread of its
+ * own, keeps the result of the first strategy that finishes and cancels 
+ * the others. Which strategy is fastest differs from puzzle to puzzle, so 
+ * racing them cuts the latency of the slow puzzles on a machine with 
+ * several processors.
+ * <p>
+ * How often every strategy won is counted over all portfolios of the 
+ * program, see {@link Portfolio#getWins()}.
+ * @author robert
+ *
+ */
+public class Portfolio {
+	
+	// node budget of the first run of the strategies with restarts
+	private static final int RESTART_NODES = 1000;
+	
+	// threads are kept for the next portfolio
+	private static final ExecutorService executor = 
+			Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "portfolio");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	private static final Map<String, Long> wins = new TreeMap<String, Long>();
+	
+	private SudokuProblem result;
+	private Strategy winner;
+	
+	/**
+	 * Solves a Sudoku with the provided strategies.
+	 * @param sudoku The unsolved instance with the rows and columns of the 
+	 * topology, 0 indicating that the cell at the corresponding position is
+	 * blank.
+	 * @param topology The units and peers of the instance's cells.
+	 * @param limit Cancels every search or restricts their time budget.
+	 * @param maxSolutions Every search stops after finding this many 
+	 * solutions.
+	 * @param strategies The strategies to race, at least one.
+	 */
+	public Portfolio(final int[][] sudoku, final Topology topology, 
+			SearchLimit limit, final int maxSolutions, List<Strategy> strategies) {
+		CompletionService<SudokuProblem> searches = 
+				new ExecutorCompletionService<SudokuProblem>(executor);
+		Map<Future<SudokuProblem>, Strategy> running = 
+				new HashMap<Future<SudokuProblem>, Strategy>();
+		List<SearchLimit> limits = new ArrayList<SearchLimit>();
+		try {
+			for(final Strategy strategy : strategies) {
+				final SearchLimit searchLimit = new SearchLimit(limit);
+				limits.add(searchLimit);
+				running.put(searches.submit(new Callable<SudokuProblem>() {
+					@Override
+					public SudokuProblem call() {
+						return new SudokuProblem(sudoku, topology, searchLimit, 
+								maxSolutions, strategy);
+					}
+				}), strategy);
+			}
+			for(int i = 0; i < strategies.size(); i++) {
+				Future<SudokuProblem> search = searches.take();
+				SudokuProblem problem = search.get();
+				// a search that stopped at the maximum number of solutions
+				// is as good as a complete one
+				if(problem.isComplete() 
+						|| problem.getNumberOfSolutions() >= maxSolutions) {
+					result = problem;
+					winner = running.get(search);
+					countWin(winner);
+					return;
+				}
+				// every search was stopped by the limit, so keep the one
+				// that found the most solutions
+				if(result == null || problem.getNumberOfSolutions() 
+						> result.getNumberOfSolutions())
+					result = problem;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A search of the portfolio failed", 
+					e.getCause());
+		} finally {
+			for(SearchLimit searchLimit : limits)
+				searchLimit.cancel();
+		}
+	}
+	
+	/**
+	 * Gets strategies that complement each other: plain backtracking, 
+	 * backjumping, the descending order and random orders with restarts.
+	 * @param count The number of strategies, e.g. the number of available
+	 * processors.
+	 * @return At least one strategy.
+	 */
+	public static List<Strategy> getDefaultStrategies(int count) {
+		List<Strategy> strategies = new ArrayList<Strategy>();
+		strategies.add(Strategy.getDefault());
+		if(count > 1)
+			strategies.add(Strategy.getDefault().withBackjumping());
+		if(count > 2)
+			strategies.add(Strategy.getDefault()
+					.withValueOrder(ValueOrder.DESCENDING));
+		for(int seed = 1; strategies.size() < count; seed++)
+			strategies.add(Strategy.getDefault()
+					.withValueOrder(ValueOrder.RANDOM).withSeed(seed)
+					.withRestarts(RESTART_NODES));
+		return strategies;
+	}
+	
+	private static void countWin(Strategy strategy) {
+		synchronized(wins) {
+			Long count = wins.get(strategy.toString());
+			wins.put(strategy.toString(), count == null ? 1 : count + 1);
+		}
+	}
+	
+	/**
+	 * Gets how often every strategy won a portfolio since the program 
+	 * started.
+	 * @return The number of wins by the name of the strategy, see
+	 * {@link Strategy#toString()}.
+	 */
+	public static Map<String, Long> getWins() {
+		synchronized(wins) {
+			return new TreeMap<String, Long>(wins);
+		}
+	}
+	
+	/**
+	 * Gets the search of the winning strategy. If the limit stopped every
+	 * search, the search that found the most solutions.
+	 * @return The search, e.g. to get the solution or the statistics from,
+	 * or {@code null} if the thread was interrupted before any search 
+	 * finished.
+	 */
+	public SudokuProblem getResult() {
+		return result;
+	}
+	
+	/**
+	 * Gets the strategy that finished first.
+	 * @return The strategy or {@code null} if the limit stopped every search.
+	 */
+	public Strategy getWinner() {
+		return winner;
+	}
+}
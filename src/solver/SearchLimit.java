@@ -0,0 +1,133 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+/**
+ * Limits how long a search may run. A search limit can be cancelled from
+ * another thread and optionally expires after a time budget. Searches poll
+ * {@link SearchLimit#poll()} or {@link SearchLimit#isExhausted()} and stop
+ * as soon as it returns {@code true}.
+ * @author robert
+ *
+ */
+public class SearchLimit {
+
+	// the clock is only read every CHECK_INTERVAL polls to keep polling cheap
+	private static final int CHECK_INTERVAL = 1024;
+	
+	private final SearchLimit parent;
+	private final boolean budgeted;
+	private final long deadline;
+	private volatile boolean cancelled = false;
+	private volatile boolean timedOut = false;
+	private int pollsUntilCheck = CHECK_INTERVAL;
+	
+	/**
+	 * Creates a search limit without time budget. Searches only stop when
+	 * the limit gets cancelled.
+	 */
+	public SearchLimit() {
+		parent = null;
+		budgeted = false;
+		deadline = 0;
+	}
+	
+	/**
+	 * Creates a search limit with a time budget.
+	 * @param timeBudget The time in milliseconds a search may take, starting
+	 * now.
+	 */
+	public SearchLimit(long timeBudget) {
+		this(null, timeBudget);
+	}
+	
+	/**
+	 * Creates a search limit without time budget of its own for one of 
+	 * several searches that run in parallel under a common limit. A limit 
+	 * counts its polls in an unsynchronized field, so every thread needs a 
+	 * limit of its own.
+	 * @param parent The common limit of the searches.
+	 */
+	public SearchLimit(SearchLimit parent) {
+		this.parent = parent;
+		budgeted = false;
+		deadline = 0;
+	}
+	
+	/**
+	 * Creates a search limit with a time budget for a part of a larger 
+	 * search, e.g. one of several attempts. The limit is exhausted when its
+	 * own budget is used up or the parent limit is exhausted.
+	 * @param parent The limit of the larger search or {@code null}.
+	 * @param timeBudget The time in milliseconds this part may take, starting
+	 * now.
+	 */
+	public SearchLimit(SearchLimit parent, long timeBudget) {
+		this.parent = parent;
+		budgeted = true;
+		deadline = System.nanoTime() + timeBudget * 1000000L;
+	}
+	
+	/**
+	 * Asks every search that polls this limit to stop. May be called from 
+	 * any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	public boolean isCancelled() {
+		return cancelled || (parent != null && parent.isCancelled());
+	}
+	
+	public boolean isTimedOut() {
+		return timedOut || (parent != null && parent.isTimedOut());
+	}
+	
+	/**
+	 * Checks if a search has to stop. Reads the clock on every call, so use
+	 * {@link SearchLimit#poll()} within hot loops.
+	 * @return {@code true} if this limit was cancelled or the time budget is
+	 * used up, {@code false} otherwise.
+	 */
+	public boolean isExhausted() {
+		if(cancelled || timedOut)
+			return true;
+		if(parent != null && parent.isExhausted())
+			return true;
+		if(budgeted && System.nanoTime() - deadline > 0)
+			timedOut = true;
+		return timedOut;
+	}
+	
+	/**
+	 * Checks if a search has to stop. Only reads the clock every few calls 
+	 * and thus is cheap enough to be called for every node of a search tree.
+	 * Cancellation is noticed immediately.
+	 * @return {@code true} if this limit was cancelled or the time budget is
+	 * used up, {@code false} otherwise.
+	 */
+	public boolean poll() {
+		if(cancelled || timedOut || (parent != null && parent.cancelled))
+			return true;
+		if((!budgeted && parent == null) || --pollsUntilCheck > 0)
+			return false;
+		pollsUntilCheck = CHECK_INTERVAL;
+		return isExhausted();
+	}
+}
@@ -0,0 +1,173 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+/**
+ * Counts how much work a search did. The counters are plain fields that are
+ * cheap to update, so every search keeps statistics. Statistics of several
+ * searches can be summed up via {@link SearchStatistics#add(SearchStatistics)}.
+ * @author robert
+ *
+ */
+public class SearchStatistics {
+
+	private long searches = 0;
+	private long nodes = 0;
+	private long deadEnds = 0;
+	private long eliminations = 0;
+	private long backjumps = 0;
+	private long nogoodPrunings = 0;
+	private long restarts = 0;
+	private int maxDepth = 0;
+	private long wallTime = 0;
+	
+	/**
+	 * Counts a complete search, e.g. one solver run or one rating run.
+	 */
+	public void countSearch() {
+		searches++;
+	}
+	
+	/**
+	 * Counts a node of the search tree, i.e. a cell that gets assigned a
+	 * value.
+	 * @param depth The number of assignments above this node.
+	 */
+	public void countNode(int depth) {
+		nodes++;
+		if(depth > maxDepth)
+			maxDepth = depth;
+	}
+	
+	/**
+	 * Counts a node that cannot be extended because some cell has no valid
+	 * value left, forcing the search to backtrack.
+	 */
+	public void countDeadEnd() {
+		deadEnds++;
+	}
+	
+	/**
+	 * Counts candidate values that were removed from cells.
+	 * @param count The number of removed candidates.
+	 */
+	public void countEliminations(int count) {
+		eliminations += count;
+	}
+	
+	/**
+	 * Counts a node that was left before trying all of its alternatives
+	 * because the dead end below it doesn't depend on its assignment.
+	 */
+	public void countBackjump() {
+		backjumps++;
+	}
+	
+	/**
+	 * Counts an alternative that was skipped because it completes a 
+	 * learned nogood.
+	 */
+	public void countNogoodPruning() {
+		nogoodPrunings++;
+	}
+	
+	/**
+	 * Counts a search that was started over because it used up its node
+	 * budget.
+	 */
+	public void countRestart() {
+		restarts++;
+	}
+	
+	/**
+	 * Adds the time a search took.
+	 * @param nanos Elapsed time in nanoseconds.
+	 */
+	public void addTime(long nanos) {
+		wallTime += nanos;
+	}
+	
+	/**
+	 * Adds the counters of other statistics to this statistics. The maximum
+	 * depth is the maximum of both.
+	 * @param other Statistics of another search.
+	 */
+	public void add(SearchStatistics other) {
+		searches += other.searches;
+		nodes += other.nodes;
+		deadEnds += other.deadEnds;
+		eliminations += other.eliminations;
+		backjumps += other.backjumps;
+		nogoodPrunings += other.nogoodPrunings;
+		restarts += other.restarts;
+		maxDepth = Math.max(maxDepth, other.maxDepth);
+		wallTime += other.wallTime;
+	}
+	
+	public long getSearches() {
+		return searches;
+	}
+	
+	public long getNodes() {
+		return nodes;
+	}
+	
+	public long getDeadEnds() {
+		return deadEnds;
+	}
+	
+	public long getEliminations() {
+		return eliminations;
+	}
+	
+	public long getBackjumps() {
+		return backjumps;
+	}
+	
+	public long getNogoodPrunings() {
+		return nogoodPrunings;
+	}
+	
+	public long getRestarts() {
+		return restarts;
+	}
+	
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	/**
+	 * @return The elapsed time in milliseconds.
+	 */
+	public long getWallTime() {
+		return wallTime / 1000000L;
+	}
+
+	@Override
+	public String toString() {
+		return "searches:               " + searches + "\n"
+				+ "nodes visited:          " + nodes + "\n"
+				+ "dead ends (backtracks): " + deadEnds + "\n"
+				+ "maximum depth:          " + maxDepth + "\n"
+				+ "candidates eliminated:  " + eliminations + "\n"
+				+ "backjumps:              " + backjumps + "\n"
+				+ "nogood prunings:        " + nogoodPrunings + "\n"
+				+ "restarts:               " + restarts + "\n"
+				+ "wall time:              " + getWallTime() + "ms";
+	}
+}
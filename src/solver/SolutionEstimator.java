@@ -0,0 +1,254 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+import java.util.Locale;
+import java.util.Random;
+
+import topology.Topology;
+import utile.SudokuIO;
+
+/**
+ * Estimates the number of solutions of a Sudoku instance that has too many
+ * solutions to count them, e.g. a grid with few givens. The estimate is 
+ * computed by random probing of the search tree (Knuth's estimator): a 
+ * probe walks from the root to a leaf taking a random alternative at every
+ * branching. If the leaf is a solution, the product of the numbers of
+ * alternatives along the path is a sample of the solution count, otherwise
+ * the sample is 0. The mean of the samples is an unbiased estimate.
+ * <p>
+ * A probe visits at most one node per blank cell, so a thousand probes of
+ * a 9x9 grid take a few milliseconds. The samples vary a lot, and the
+ * standard error only tells the magnitude of the uncertainty. It is 
+ * reliable to about a factor of ten, enough to report "roughly 10^k 
+ * solutions" along with the standard error, see 
+ * {@link SolutionEstimator#toString()}. Samples and sums are kept as 
+ * decimal logarithms, since the counts of large grids, e.g. of an empty 
+ * 25x25 grid, exceed the range of a double.
+ * @author robert
+ *
+ */
+public class SolutionEstimator {
+
+	private int samples = 0;
+	// decimal logarithms of the sums of the samples and of their squares
+	private double logSum = Double.NEGATIVE_INFINITY;
+	private double logSumOfSquares = Double.NEGATIVE_INFINITY;
+	private SearchStatistics statistics = new SearchStatistics();
+	
+	/**
+	 * Estimates the number of solutions of a standard Sudoku instance.
+	 * @param sudoku The unsolved instance as N x N integer array with values
+	 * from 0 to N, 0 indicating that the cell at the corresponding position
+	 * is blank.
+	 * @param samples The number of probes.
+	 */
+	public SolutionEstimator(int[][] sudoku, int samples) {
+		this(sudoku, new SearchLimit(), samples);
+	}
+	
+	/**
+	 * Estimates the number of solutions of a standard Sudoku instance and
+	 * stops probing as soon as the provided limit is exhausted.
+	 * @param sudoku The unsolved instance as N x N integer array with values
+	 * from 0 to N, 0 indicating that the cell at the corresponding position
+	 * is blank.
+	 * @param limit Cancels the estimation or restricts its time budget. The
+	 * estimate uses the probes finished so far.
+	 * @param samples The number of probes.
+	 */
+	public SolutionEstimator(int[][] sudoku, SearchLimit limit, int samples) {
+		this(sudoku, Topology.getClassic(SudokuIO.getBoxSize(sudoku.length)), 
+				limit, samples);
+	}
+	
+	/**
+	 * Estimates the number of solutions of an instance of the provided
+	 * topology and stops probing as soon as the provided limit is exhausted.
+	 * @param sudoku The unsolved instance with the rows and columns of the 
+	 * topology, 0 indicating that the cell at the corresponding position is
+	 * blank.
+	 * @param topology The units and peers of the instance's cells.
+	 * @param limit Cancels the estimation or restricts its time budget. The
+	 * estimate uses the probes finished so far.
+	 * @param samples The number of probes.
+	 */
+	public SolutionEstimator(int[][] sudoku, Topology topology, 
+			SearchLimit limit, int samples) {
+		long start = System.nanoTime();
+		int[][] grid = new int[sudoku.length][];
+		for(int row = 0; row < sudoku.length; row++)
+			grid[row] = sudoku[row].clone();
+		BlankCellList cells = new BlankCellList(grid, topology);
+		if(cells.isConsistent()) {
+			// the assignments of a probe, undone before the next probe
+			BlankCell[] pathCells = new BlankCell[cells.size()];
+			int[] pathValues = new int[cells.size()];
+			int[] marks = new int[cells.size()];
+			Random random = new Random();
+			// a probe visits hundreds of nodes, so reading the clock once 
+			// per probe is cheap, while poll() would read it too rarely
+			while(this.samples < samples && !limit.isExhausted()) {
+				double logSample = 0;
+				int depth = 0;
+				while(!cells.isEmpty()) {
+					int alternatives = cells.selectBranch(depth);
+					statistics.countNode(depth);
+					if(alternatives == 0) { // not a solution
+						statistics.countDeadEnd();
+						logSample = Double.NEGATIVE_INFINITY;
+						break;
+					}
+					logSample += Math.log10(alternatives);
+					int alternative = random.nextInt(alternatives);
+					pathCells[depth] = cells.getBranchCell(depth, alternative);
+					pathValues[depth] = 
+							cells.getBranchValue(depth, alternative);
+					marks[depth] = cells.assign(pathCells[depth], 
+							pathValues[depth]);
+					statistics.countEliminations(
+							cells.getEliminations(marks[depth]));
+					depth++;
+				}
+				while(depth > 0) {
+					depth--;
+					cells.unassign(pathCells[depth], pathValues[depth], 
+							marks[depth]);
+				}
+				this.samples++;
+				logSum = addLogs(logSum, logSample);
+				logSumOfSquares = addLogs(logSumOfSquares, 2 * logSample);
+			}
+		}
+		else
+			this.samples = samples; // no solution for sure
+		statistics.countSearch();
+		statistics.addTime(System.nanoTime() - start);
+	}
+	
+	// log10(10^a + 10^b) without leaving the range of a double
+	private static double addLogs(double a, double b) {
+		double max = Math.max(a, b);
+		if(Double.isInfinite(max))
+			return max;
+		return max + Math.log10(1 + Math.pow(10, Math.min(a, b) - max));
+	}
+	
+	/**
+	 * Gets the estimated number of solutions.
+	 * @return The mean of the samples, 0 if no probe was finished. Counts 
+	 * beyond the range of a double, e.g. of empty 25x25 grids, are infinite,
+	 * see {@link SolutionEstimator#getLogEstimate()}.
+	 */
+	public double getEstimate() {
+		return Math.pow(10, getLogEstimate());
+	}
+	
+	/**
+	 * Gets the decimal logarithm of the estimated number of solutions.
+	 * @return The logarithm of the mean of the samples, negative infinity
+	 * if the mean is 0 or no probe was finished.
+	 */
+	public double getLogEstimate() {
+		if(samples == 0)
+			return Double.NEGATIVE_INFINITY;
+		return logSum - Math.log10(samples);
+	}
+	
+	/**
+	 * Gets the standard error of the estimate, i.e. the standard deviation
+	 * of the samples divided by the square root of their number.
+	 * @return The standard error or infinity if fewer than two probes were
+	 * finished or the error exceeds the range of a double.
+	 */
+	public double getStandardError() {
+		return Math.pow(10, getLogStandardError());
+	}
+	
+	/**
+	 * Gets the decimal logarithm of the standard error of the estimate.
+	 * @return The logarithm of the standard error, positive infinity if 
+	 * fewer than two probes were finished and negative infinity if the 
+	 * error is 0.
+	 */
+	public double getLogStandardError() {
+		if(samples < 2)
+			return Double.POSITIVE_INFINITY;
+		double logMean = getLogEstimate();
+		if(Double.isInfinite(logMean)) // every sample is 0
+			return Double.NEGATIVE_INFINITY;
+		// the mean of the squares relative to the squared mean, from 1 to n
+		double ratio = Math.pow(10, logSumOfSquares - Math.log10(samples) 
+				- 2 * logMean);
+		// the variance is n / (n - 1) * mean^2 * (ratio - 1)
+		return logMean + 0.5 * Math.log10(Math.max(ratio - 1, 0) 
+				/ (samples - 1));
+	}
+	
+	/**
+	 * Gets the decimal magnitude of the estimate, e.g. 22 for an empty 9x9
+	 * grid with about 6.7 * 10^21 solutions.
+	 * @return The exponent k of the power of ten closest to the estimate or
+	 * -1 if the estimate is 0.
+	 */
+	public int getMagnitude() {
+		double logEstimate = getLogEstimate();
+		if(Double.isInfinite(logEstimate))
+			return -1;
+		return (int) Math.round(logEstimate);
+	}
+	
+	public int getSamples() {
+		return samples;
+	}
+	
+	/**
+	 * Describes the estimate with its standard error, e.g. 
+	 * "6.7e+21 +/- 1.2e+21 solutions (roughly 10^22, 1000 probes)".
+	 */
+	@Override
+	public String toString() {
+		double logError = getLogStandardError();
+		String errorText = logError == Double.POSITIVE_INFINITY 
+				? "unknown error" : "+/- " + format(logError);
+		return String.format(Locale.ROOT, "%s %s solutions (roughly 10^%d, "
+				+ "%d probes)", format(getLogEstimate()), errorText, 
+				getMagnitude(), samples);
+	}
+	
+	// formats a number given by its decimal logarithm like "%.1e"
+	private static String format(double log) {
+		if(log == Double.NEGATIVE_INFINITY)
+			return "0.0e+00";
+		long exponent = (long) Math.floor(log);
+		double mantissa = Math.pow(10, log - exponent);
+		if(mantissa >= 9.95) { // rounds up to 10.0
+			mantissa /= 10;
+			exponent++;
+		}
+		return String.format(Locale.ROOT, "%.1fe%+03d", mantissa, exponent);
+	}
+	
+	/**
+	 * Gets the statistics of the probes. All probes count as one search.
+	 * @return The statistics of this estimation.
+	 */
+	public SearchStatistics getStatistics() {
+		return statistics;
+	}
+}
@@ -0,0 +1,243 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import topology.Topology;
+import utile.SudokuIO;
+
+/**
+ * Enumerates the solutions of a Sudoku instance lazily. Unlike 
+ * {@link SudokuProblem}, which counts solutions and keeps only the first 
+ * one, the iterator computes the next solution when it is asked for and 
+ * suspends the search in between. Callers can take the first k solutions,
+ * compare two solutions of an ambiguous instance or stop at any time
+ * without exhausting the search tree.
+ * <p>
+ * The search visits the same tree as {@link SudokuProblem}, but keeps the
+ * alternatives of every branching on an explicit stack instead of the call
+ * stack, so it can be resumed. An iterator is not thread-safe.
+ * @author robert
+ *
+ */
+public class SolutionIterator implements Iterator<int[][]> {
+
+	private final BlankCellList cells;
+	// the instance with the values assigned by the search so far
+	private final int[][] grid;
+	private final SearchLimit limit;
+	private final SearchStatistics statistics = new SearchStatistics();
+	
+	// alternatives[depth] is the number of alternatives of the branching at
+	// the given depth, next[depth] the index of the next one to try and 
+	// marks[depth] the mark of the assignment of the current one
+	private final int[] alternatives;
+	private final int[] next;
+	private final int[] marks;
+	private int depth = 0;
+	// whether the branching at the current depth is still to be selected
+	private boolean descending;
+	
+	private int[][] pending; // the solution found by hasNext
+	private boolean finished;
+	private boolean complete = true;
+	private int solutionCount = 0;
+	
+	/**
+	 * Creates an iterator over the solutions of a standard Sudoku instance.
+	 * @param sudoku The unsolved instance as N x N integer array with values
+	 * from 0 to N, 0 indicating that the cell at the corresponding position
+	 * is blank.
+	 */
+	public SolutionIterator(int[][] sudoku) {
+		this(sudoku, new SearchLimit());
+	}
+	
+	/**
+	 * Creates an iterator over the solutions of a standard Sudoku instance
+	 * that stops as soon as the provided limit is exhausted.
+	 * @param sudoku The unsolved instance as N x N integer array with values
+	 * from 0 to N, 0 indicating that the cell at the corresponding position
+	 * is blank.
+	 * @param limit Cancels the search or restricts its time budget. See
+	 * {@link SolutionIterator#isComplete()} for the outcome.
+	 */
+	public SolutionIterator(int[][] sudoku, SearchLimit limit) {
+		this(sudoku, Topology.getClassic(SudokuIO.getBoxSize(sudoku.length)),
+				limit);
+	}
+	
+	/**
+	 * Creates an iterator over the solutions of an instance of the provided
+	 * topology that stops as soon as the provided limit is exhausted.
+	 * @param sudoku The unsolved instance with the rows and columns of the 
+	 * topology, 0 indicating that the cell at the corresponding position is
+	 * blank.
+	 * @param topology The units and peers of the instance's cells.
+	 * @param limit Cancels the search or restricts its time budget. The 
+	 * time budget counts from its creation, not only while solutions are
+	 * computed.
+	 */
+	public SolutionIterator(int[][] sudoku, Topology topology, 
+			SearchLimit limit) {
+		long start = System.nanoTime();
+		grid = new int[sudoku.length][];
+		for(int row = 0; row < sudoku.length; row++)
+			grid[row] = sudoku[row].clone();
+		this.limit = limit;
+		cells = new BlankCellList(grid, topology);
+		int maxDepth = cells.size() + 1;
+		alternatives = new int[maxDepth];
+		next = new int[maxDepth];
+		marks = new int[maxDepth];
+		descending = cells.isConsistent();
+		finished = !descending;
+		statistics.countSearch();
+		statistics.addTime(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Checks if there is another solution. This computes the next solution
+	 * if it wasn't computed yet, which may take as long as any search.
+	 * @return {@code true} if another solution was found, {@code false} if 
+	 * there is none or the search limit was exhausted, see 
+	 * {@link SolutionIterator#isComplete()}.
+	 */
+	@Override
+	public boolean hasNext() {
+		if(pending == null && !finished) {
+			long start = System.nanoTime();
+			pending = findNext();
+			statistics.addTime(System.nanoTime() - start);
+		}
+		return pending != null;
+	}
+	
+	/**
+	 * Gets the next solution.
+	 * @return A new array with the rows and columns of the instance. 
+	 * @throws NoSuchElementException If there are no more solutions.
+	 */
+	@Override
+	public int[][] next() {
+		if(!hasNext())
+			throw new NoSuchElementException();
+		int[][] solution = pending;
+		pending = null;
+		return solution;
+	}
+	
+	/**
+	 * Gets the remaining solutions as a sequential stream. The stream 
+	 * computes solutions as they are consumed, e.g. 
+	 * {@code stream().limit(2)} computes at most two solutions.
+	 * @return A lazy stream of the solutions.
+	 */
+	public Stream<int[][]> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+	
+	/**
+	 * Checks if the search ran to the end of the search tree. As long as
+	 * this returns {@code true} after {@link SolutionIterator#hasNext()}
+	 * returned {@code false}, every solution was returned.
+	 * @return {@code false} if the search limit was exhausted.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+	
+	/**
+	 * Gets the number of solutions found so far, including a solution that
+	 * was found by {@link SolutionIterator#hasNext()} but not returned yet.
+	 * @return The number of solutions.
+	 */
+	public int getSolutionCount() {
+		return solutionCount;
+	}
+	
+	/**
+	 * Gets the statistics of the search so far. The search counts as a 
+	 * single search however many solutions are taken.
+	 * @return The statistics of this iterator's search.
+	 */
+	public SearchStatistics getStatistics() {
+		return statistics;
+	}
+	
+	// resumes the search and returns the next solution or null
+	private int[][] findNext() {
+		while(true) {
+			if(descending) {
+				if(cells.isEmpty()) { // value assigned to every cell
+					solutionCount++;
+					alternatives[depth] = 0; // continue with the parent
+					next[depth] = 0;
+					descending = false;
+					return copyGrid();
+				}
+				if(limit.poll()) { // give up and keep what was found so far
+					complete = false;
+					finished = true;
+					return null;
+				}
+				alternatives[depth] = cells.selectBranch(depth);
+				next[depth] = 0;
+				statistics.countNode(depth);
+				if(alternatives[depth] == 0)
+					statistics.countDeadEnd();
+			}
+			
+			// undo assignments until some branching has alternatives left
+			while(next[depth] >= alternatives[depth]) {
+				if(depth == 0) { // every alternative was tried
+					finished = true;
+					return null;
+				}
+				depth--;
+				BlankCell cell = cells.getBranchCell(depth, next[depth] - 1);
+				int value = cells.getBranchValue(depth, next[depth] - 1);
+				cells.unassign(cell, value, marks[depth]);
+				grid[cell.getRow()][cell.getCol()] = 0;
+			}
+			
+			BlankCell cell = cells.getBranchCell(depth, next[depth]);
+			int value = cells.getBranchValue(depth, next[depth]);
+			next[depth]++;
+			marks[depth] = cells.assign(cell, value);
+			statistics.countEliminations(cells.getEliminations(marks[depth]));
+			grid[cell.getRow()][cell.getCol()] = value;
+			depth++;
+			descending = true;
+		}
+	}
+	
+	private int[][] copyGrid() {
+		int[][] copy = new int[grid.length][];
+		for(int row = 0; row < grid.length; row++)
+			copy[row] = grid[row].clone();
+		return copy;
+	}
+}
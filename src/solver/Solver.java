@@ -17,56 +17,105 @@
 
 package solver;
 
-import java.util.LinkedList;
-import java.util.List;
+import topology.Topology;
+import utile.SudokuIO;
 
 /**
- * Solves standard 9x9 Sudoku instances.
+ * Solves Sudoku instances of size N x N, N being the square of a box size up
+ * to 5, e.g. standard 9x9 instances.
  * @author robert
  *
  */
 public class Solver {
 	
 	private static int[][] solution = new int[9][9];
+	private static SearchLimit limit;
+	private static boolean complete;
+	private static SearchStatistics statistics = new SearchStatistics();
 
 	/**
 	 * Searches for a solution of the provided Sudoku instance.
-	 * @param sudoku A 9x9 integer array containing values from 0 to 9, 0
+	 * @param sudoku A N x N integer array containing values from 0 to N, 0
 	 * meaning that the cell at the corresponding position is empty.
 	 * @return {@code true} if a solution to the provided instance could be
 	 * found, {@code false} if there is no solution for the provided instance.
 	 */
 	public static boolean findSolution(int[][] sudoku) {
+		return findSolution(sudoku, new SearchLimit());
+	}
+	
+	/**
+	 * Searches for a solution of the provided Sudoku instance until the 
+	 * provided limit is exhausted.
+	 * @param sudoku A N x N integer array containing values from 0 to N, 0
+	 * meaning that the cell at the corresponding position is empty.
+	 * @param searchLimit Cancels the search or restricts its time budget.
+	 * @return {@code true} if a solution to the provided instance could be
+	 * found, {@code false} if there is no solution for the provided instance
+	 * or the search was stopped, see {@link Solver#isComplete()}.
+	 */
+	public static boolean findSolution(int[][] sudoku, SearchLimit searchLimit) {
+		return findSolution(sudoku, 
+				Topology.getClassic(SudokuIO.getBoxSize(sudoku.length)), 
+				searchLimit);
+	}
+	
+	/**
+	 * Searches for a solution of the provided instance of a topology until
+	 * the provided limit is exhausted.
+	 * @param sudoku An integer array with the rows and columns of the 
+	 * topology, 0 meaning that the cell at the corresponding position is
+	 * empty.
+	 * @param topology The units and peers of the instance's cells.
+	 * @param searchLimit Cancels the search or restricts its time budget.
+	 * @return {@code true} if a solution to the provided instance could be
+	 * found, {@code false} if there is no solution for the provided instance
+	 * or the search was stopped, see {@link Solver#isComplete()}.
+	 */
+	public static boolean findSolution(int[][] sudoku, Topology topology, 
+			SearchLimit searchLimit) {
 		// first fill the solution with the given values
 		solution = sudoku;
+		limit = searchLimit;
+		complete = true;
+		statistics = new SearchStatistics();
+		long start = System.nanoTime();
 		// then backtrack over the blank cells to obtain the complete solution
-		BlankCellList blankCells = new BlankCellList(sudoku);
-		return backtrack(blankCells);
+		BlankCellList blankCells = new BlankCellList(sudoku, topology);
+		boolean solved = blankCells.isConsistent() && backtrack(blankCells, 0);
+		statistics.countSearch();
+		statistics.addTime(System.nanoTime() - start);
+		return solved;
 	}
 
-	private static boolean backtrack(BlankCellList cells) {
+	private static boolean backtrack(BlankCellList cells, int depth) {
 		if(cells.isEmpty()) // value assigned to every cell. solution found
 			return true;
+		if(limit.poll()) {
+			complete = false;
+			return false;
+		}
 		
-		// assign a value to the most constrained cell and delete it from the
-		// list of valid values in the neighboring cells. then backtrack over
-		// the resulting list of cells.
+		// assign a value to the most constrained cell (or the most 
+		// constrained value to one of the cells of a unit) and delete it from
+		// the list of valid values in the neighboring cells. then backtrack
+		// over the resulting list of cells.
 		
-		BlankCell currentCell = cells.removeMostConstrainedCell();
-		List<Integer> validValues = currentCell.getValidValues();
-		List<BlankCell> neighbors = cells.getNeighbors(currentCell);
+		int alternatives = cells.selectBranch(depth);
+		statistics.countNode(depth);
+		if(alternatives == 0)
+			statistics.countDeadEnd();
 		
-		for(int value : validValues) {
+		for(int i = 0; i < alternatives; i++) {
+			BlankCell currentCell = cells.getBranchCell(depth, i);
+			int value = cells.getBranchValue(depth, i);
+			
 			// remove the assigned value from the neighboring cells and keep
 			// track of the cells that were affected by the removal
-			List<BlankCell> affectedNeighbors = new LinkedList<BlankCell>();
-			for(BlankCell neighbor : neighbors) {
-				boolean neighborAffected = neighbor.invalidateValue(value);
-				if(neighborAffected)
-					affectedNeighbors.add(neighbor);
-			}
+			int mark = cells.assign(currentCell, value);
+			statistics.countEliminations(cells.getEliminations(mark));
 			
-			if(backtrack(cells) == true) { // solution found
+			if(backtrack(cells, depth + 1) == true) { // solution found
 				// fill in the value that led to a solution
 				int row = currentCell.getRow();
 				int col = currentCell.getCol();
@@ -74,24 +123,43 @@ public class Solver {
 				return true; // propagate that a solution was found
 			}
 			else { // no solution found with the current value
-				for(BlankCell affectedNeighbor : affectedNeighbors)
-					// before trying the next value, reinsert the value that
-					// was invalidated in the (affected) neighboring cells
-					affectedNeighbor.addValidValue(value);
+				// before trying the next value, reinsert the value that
+				// was invalidated in the (affected) neighboring cells and
+				// reinsert the cell into the list of unassigned cells
+				cells.unassign(currentCell, value, mark);
+				if(!complete) // search was stopped further down
+					break;
 			}
 		}
 		
-		// no solution could be found for any of the valid values. So remove
-		// any assignments from this cell and reinsert it into the list of
-		// unassigned cells.
-		cells.add(currentCell);
+		// no solution could be found for any of the alternatives.
 		return false;
 	}
 	
+	/**
+	 * Checks if the last call of {@link Solver#findSolution(int[][], SearchLimit)}
+	 * ran to the end. If it didn't, a return value of {@code false} doesn't
+	 * mean that the instance has no solution.
+	 * @return {@code false} if the last search was stopped early.
+	 */
+	public static boolean isComplete() {
+		return complete;
+	}
+	
+	/**
+	 * Gets the statistics of the last search, e.g. the number of visited
+	 * nodes.
+	 * @return The statistics of the last call of 
+	 * {@link Solver#findSolution(int[][], SearchLimit)}.
+	 */
+	public static SearchStatistics getStatistics() {
+		return statistics;
+	}
+	
 	/**
 	 * Call this method to obtain the last solution that 
 	 * {@link Solver#findSolution(int[][])} has found. 
-	 * @return A 9x9 integer array filled with values from 1 to 9. If 
+	 * @return A N x N integer array filled with values from 1 to N. If 
 	 * {@link Solver#findSolution(int[][]) never has been called, an array
 	 * filled with 0's will be returned.
 	 */
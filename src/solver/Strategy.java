@@ -0,0 +1,150 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+import java.util.Random;
+
+/**
+ * A configuration of the search for solutions: the engine, the heuristic
+ * that picks the cell of every branching, the order of the alternatives and
+ * whether the search restarts with a growing node budget. Strategies are
+ * immutable, the with-methods return modified copies, e.g.
+ * {@code Strategy.getDefault().withBackjumping()}. Different strategies
+ * win on different puzzles, see {@link Portfolio}.
+ * @author robert
+ *
+ */
+public final class Strategy {
+	
+	private static final Strategy DEFAULT = 
+			new Strategy(false, Branching.MRV, ValueOrder.ASCENDING, 0, 0);
+	
+	private final boolean backjumping;
+	private final Branching branching;
+	private final ValueOrder order;
+	private final long seed;
+	private final long restartNodes;
+	
+	private Strategy(boolean backjumping, Branching branching, 
+			ValueOrder order, long seed, long restartNodes) {
+		this.backjumping = backjumping;
+		this.branching = branching;
+		this.order = order;
+		this.seed = seed;
+		this.restartNodes = restartNodes;
+	}
+	
+	/**
+	 * Gets the strategy of a plain search: chronological backtracking on the
+	 * cells with the fewest valid values over the alternatives in ascending
+	 * order without restarts.
+	 * @return The default strategy.
+	 */
+	public static Strategy getDefault() {
+		return DEFAULT;
+	}
+	
+	/**
+	 * Searches with conflict-directed backjumping and nogood learning 
+	 * instead of chronological backtracking.
+	 * @return A copy of this strategy with backjumping.
+	 */
+	public Strategy withBackjumping() {
+		return new Strategy(true, branching, order, seed, restartNodes);
+	}
+	
+	/**
+	 * Picks the cell of every branching with the given heuristic.
+	 * @param branching The heuristic.
+	 * @return A copy of this strategy with the heuristic.
+	 */
+	public Strategy withBranching(Branching branching) {
+		return new Strategy(backjumping, branching, order, seed, restartNodes);
+	}
+	
+	/**
+	 * Tries the alternatives of every branching in the given order.
+	 * @param order The order of the alternatives.
+	 * @return A copy of this strategy with the order.
+	 */
+	public Strategy withValueOrder(ValueOrder order) {
+		return new Strategy(backjumping, branching, order, seed, restartNodes);
+	}
+	
+	/**
+	 * Seeds the random order of the alternatives and the random tie breaks,
+	 * so searches with the same seed visit the same nodes.
+	 * @param seed The seed of the random generator.
+	 * @return A copy of this strategy with the seed.
+	 */
+	public Strategy withSeed(long seed) {
+		return new Strategy(backjumping, branching, order, seed, restartNodes);
+	}
+	
+	/**
+	 * Restarts the search whenever it visited a number of nodes without
+	 * coming to a result, doubling the number for every restart so the
+	 * search remains complete. Restarts only help with a random order, which
+	 * leads every restart into different parts of the search tree.
+	 * @param initialNodes The node budget of the first run.
+	 * @return A copy of this strategy with restarts.
+	 */
+	public Strategy withRestarts(long initialNodes) {
+		return new Strategy(backjumping, branching, order, seed, initialNodes);
+	}
+	
+	public boolean isBackjumping() {
+		return backjumping;
+	}
+	
+	public Branching getBranching() {
+		return branching;
+	}
+	
+	public ValueOrder getValueOrder() {
+		return order;
+	}
+	
+	/**
+	 * @return The node budget of the first run or 0 if the search never 
+	 * restarts.
+	 */
+	public long getRestartNodes() {
+		return restartNodes;
+	}
+	
+	/**
+	 * Creates the random generator of a search with this strategy.
+	 * @return A generator seeded with the seed of this strategy.
+	 */
+	Random createRandom() {
+		return new Random(seed);
+	}
+
+	@Override
+	public String toString() {
+		String name = backjumping ? "backjumping" : "backtracking";
+		name += ", " + branching.name().toLowerCase().replace('_', '-');
+		name += ", " + order.name().toLowerCase().replace('_', '-');
+		if(order == ValueOrder.RANDOM || branching == Branching.MRV_RANDOM)
+			name += " " + seed;
+		if(restartNodes > 0)
+			name += ", restarts after " + restartNodes + " nodes";
+		return name;
+	}
+}
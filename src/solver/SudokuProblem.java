@@ -17,11 +17,15 @@
 
 package solver;
 
-import java.util.LinkedList;
-import java.util.List;
+import monitoring.Metrics;
+import monitoring.SolveEvent;
+import topology.Topology;
+import utile.SudokuIO;
 
 /**
- * Represents a Sudoku problem.
+ * Represents a Sudoku problem. Besides the standard 9x9 grid, grids of size 
+ * N x N with N being the square of a box size up to 5 are supported, e.g. 
+ * 16x16 and 25x25 grids.
  * @author robert
  *
  */
@@ -30,56 +34,188 @@ public class SudokuProblem {
 	private int solutionCount;
 	private int[][] problem;
 	private int[][] solution;
+	private SearchLimit limit;
+	private int maxSolutions;
+	private long nodeLimit;
+	private boolean complete = true;
+	private SearchStatistics statistics = new SearchStatistics();
 	
 	/**
 	 * Creates a new Sudoku problem for an unsolved Sudoku instance.
-	 * @param sudoku The unsolved instance as 9x9 integer array with values
-	 * from 0 to 9, 0 indicating that the cell at the corresponding position
+	 * @param sudoku The unsolved instance as N x N integer array with values
+	 * from 0 to N, 0 indicating that the cell at the corresponding position
 	 * is blank.
 	 */
 	public SudokuProblem(int[][] sudoku) {
+		this(sudoku, new SearchLimit());
+	}
+	
+	/**
+	 * Creates a new Sudoku problem for an unsolved Sudoku instance and stops
+	 * searching for solutions as soon as the provided limit is exhausted.
+	 * @param sudoku The unsolved instance as N x N integer array with values
+	 * from 0 to N, 0 indicating that the cell at the corresponding position
+	 * is blank.
+	 * @param limit Cancels the search or restricts its time budget. See
+	 * {@link SudokuProblem#isComplete()} for the outcome.
+	 */
+	public SudokuProblem(int[][] sudoku, SearchLimit limit) {
+		this(sudoku, limit, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Creates a new Sudoku problem for an unsolved Sudoku instance and stops
+	 * searching for solutions as soon as the provided limit is exhausted or
+	 * enough solutions were found. Use a maximum of two solutions to check
+	 * for uniqueness only.
+	 * @param sudoku The unsolved instance as N x N integer array with values
+	 * from 0 to N, 0 indicating that the cell at the corresponding position
+	 * is blank.
+	 * @param limit Cancels the search or restricts its time budget. See
+	 * {@link SudokuProblem#isComplete()} for the outcome.
+	 * @param maxSolutions The search stops after finding this many solutions.
+	 */
+	public SudokuProblem(int[][] sudoku, SearchLimit limit, int maxSolutions) {
+		this(sudoku, Topology.getClassic(SudokuIO.getBoxSize(sudoku.length)), 
+				limit, maxSolutions);
+	}
+	
+	/**
+	 * Creates a new Sudoku problem for an unsolved instance of the provided
+	 * topology, see {@link SudokuProblem#SudokuProblem(int[][], SearchLimit, 
+	 * int)}.
+	 * @param sudoku The unsolved instance with the rows and columns of the 
+	 * topology, 0 indicating that the cell at the corresponding position is
+	 * blank. Cells the topology doesn't contain, e.g. the gaps of a samurai
+	 * Sudoku, stay 0 in the solution.
+	 * @param topology The units and peers of the instance's cells.
+	 * @param limit Cancels the search or restricts its time budget.
+	 * @param maxSolutions The search stops after finding this many solutions.
+	 */
+	public SudokuProblem(int[][] sudoku, Topology topology, SearchLimit limit, 
+			int maxSolutions) {
+		this(sudoku, topology, limit, maxSolutions, Strategy.getDefault());
+	}
+	
+	/**
+	 * Creates a new Sudoku problem for an unsolved instance of the provided
+	 * topology, see {@link SudokuProblem#SudokuProblem(int[][], Topology, 
+	 * SearchLimit, int)}, and searches with the provided strategy. 
+	 * Conflict-directed backjumping traces dead ends back to the 
+	 * assignments that caused them, returns to the latest of them right 
+	 * away and remembers short combinations of assignments that fail as
+	 * nogoods. This pays off on pathological puzzles whose chronological
+	 * search explores the same dead subtrees again and again, and costs 
+	 * some bookkeeping per node on ordinary puzzles.
+	 * @param sudoku The unsolved instance with the rows and columns of the 
+	 * topology, 0 indicating that the cell at the corresponding position is
+	 * blank.
+	 * @param topology The units and peers of the instance's cells.
+	 * @param limit Cancels the search or restricts its time budget.
+	 * @param maxSolutions The search stops after finding this many solutions.
+	 * @param strategy The engine, the heuristics and the restarts of the 
+	 * search.
+	 */
+	public SudokuProblem(int[][] sudoku, Topology topology, SearchLimit limit, 
+			int maxSolutions, Strategy strategy) {
 		solutionCount = 0;
 		problem = copy(sudoku);
 		solution = problem;
-		BlankCellList blankCells = new BlankCellList(problem);
-		this.backtrack(blankCells);
+		this.limit = limit;
+		this.maxSolutions = maxSolutions;
+		long start = System.nanoTime();
+		SolveEvent event = new SolveEvent();
+		event.begin();
+		BlankCellList blankCells = new BlankCellList(problem, topology);
+		blankCells.setHeuristics(strategy.getBranching(), 
+				strategy.getValueOrder(), strategy.createRandom());
+		if(blankCells.isConsistent()) // givens don't contradict each other
+			this.search(blankCells, topology, strategy);
+		long elapsed = System.nanoTime() - start;
+		statistics.countSearch();
+		statistics.addTime(elapsed);
+		Metrics.record(Metrics.SOLVE, elapsed);
+		
+		event.end();
+		if(event.shouldCommit()) {
+			event.puzzle = SudokuIO.getShort(sudoku);
+			event.solutions = solutionCount;
+			event.complete = complete;
+			event.nodes = statistics.getNodes();
+			event.commit();
+		}
 	}
 	
 	private int[][] copy(int[][] sudoku) {
-		int[][] copy = new int[9][9];
-		for(int row = 0; row < 9; row++)
-			for(int col = 0; col < 9; col++)
-				copy[row][col] = sudoku[row][col];
+		int[][] copy = new int[sudoku.length][];
+		for(int row = 0; row < sudoku.length; row++)
+			copy[row] = sudoku[row].clone();
 		return copy;
 	}
 
-	private void backtrack(BlankCellList blankCells) {
+	// runs the engine of the strategy until it comes to a result within
+	// the node budget, doubling the budget after every run
+	private void search(BlankCellList blankCells, Topology topology, 
+			Strategy strategy) {
+		BackjumpingSearch backjumping = null;
+		if(strategy.isBackjumping()) // nogoods are kept across restarts
+			backjumping = new BackjumpingSearch(blankCells, solution, 
+					topology.getCellCount(), topology.getSize(), limit, 
+					maxSolutions, statistics);
+		long budget = strategy.getRestartNodes();
+		while(true) {
+			solutionCount = 0;
+			complete = true;
+			nodeLimit = budget > 0 ? statistics.getNodes() + budget 
+					: Long.MAX_VALUE;
+			if(backjumping != null) {
+				backjumping.run(nodeLimit);
+				solutionCount = backjumping.getSolutionCount();
+				complete = backjumping.isComplete();
+			}
+			else
+				this.backtrack(blankCells, 0);
+			if(complete || solutionCount >= maxSolutions 
+					|| statistics.getNodes() < nodeLimit || limit.isExhausted())
+				return; // not stopped by the node budget
+			budget *= 2;
+			statistics.countRestart();
+		}
+	}
+	
+	private void backtrack(BlankCellList blankCells, int depth) {
 		if(blankCells.isEmpty()) { // value assigned to every cell. solution found
 			solutionCount++;
+			if(solutionCount >= maxSolutions) // enough solutions found
+				complete = false;
+			return;
+		}
+		if(limit.poll() || statistics.getNodes() >= nodeLimit) {
+			complete = false; // give up and keep what was found so far
 			return;
 		}
 		
-		// assign a value to the most constrained cell and delete it from the
-		// list of valid values in the neighboring cells. then backtrack over
-		// the resulting list of cells.
+		// assign a value to the most constrained cell (or the most 
+		// constrained value to one of the cells of a unit) and delete it from
+		// the list of valid values in the neighboring cells. then backtrack
+		// over the resulting list of cells.
 		
-		BlankCell currentCell = blankCells.removeMostConstrainedCell();
-		List<Integer> validValues = currentCell.getValidValues();
-		List<BlankCell> neighbors = blankCells.getNeighbors(currentCell);
+		int alternatives = blankCells.selectBranch(depth);
+		statistics.countNode(depth);
+		if(alternatives == 0)
+			statistics.countDeadEnd();
 		
-		for(int value : validValues) {
+		for(int i = 0; i < alternatives; i++) {
+			BlankCell currentCell = blankCells.getBranchCell(depth, i);
+			int value = blankCells.getBranchValue(depth, i);
 			
 			// remove the assigned value from the neighboring cells and keep
 			// track of the cells that were affected by the removal
-			List<BlankCell> affectedNeighbors = new LinkedList<BlankCell>();
-			for(BlankCell neighbor : neighbors) {
-				boolean neighborAffected = neighbor.invalidateValue(value);
-				if(neighborAffected)
-					affectedNeighbors.add(neighbor);
-			}
+			int mark = blankCells.assign(currentCell, value);
+			statistics.countEliminations(blankCells.getEliminations(mark));
 			
 			int lastSolutionCount = solutionCount;
-			backtrack(blankCells);
+			backtrack(blankCells, depth + 1);
 			boolean newSolutionFound = solutionCount > lastSolutionCount;
 			boolean firstSolutionFound = newSolutionFound && lastSolutionCount == 0;
 			if(firstSolutionFound) {
@@ -88,19 +224,29 @@ public class SudokuProblem {
 				int col = currentCell.getCol();
 				solution[row][col] = value;
 			}
-			//if(solutionCount > 1)
-			//	return; // we don't need to explore the rest of the solutions
 			
-			for(BlankCell affectedNeighbor : affectedNeighbors)
-				// before trying the next value, reinsert the value that
-				// was invalidated in the (affected) neighboring cells
-				affectedNeighbor.addValidValue(value);
+			// before trying the next value, reinsert the value that
+			// was invalidated in the (affected) neighboring cells and
+			// reinsert the cell into the list of unassigned cells
+			blankCells.unassign(currentCell, value, mark);
+			
+			if(!complete) // search was stopped further down
+				break;
 		}
-		
-		// no solution could be found for any of the valid values. So remove
-		// any assignments from this cell and reinsert it into the list of
-		// unassigned cells.
-		blankCells.add(currentCell);
+	}
+	
+	/**
+	 * Checks if the search for solutions ran to the end. If it didn't, the
+	 * search limit was exhausted or the maximum number of solutions was found
+	 * and {@link SudokuProblem#getNumberOfSolutions()} is only a lower bound.
+	 * The solution returned by {@link SudokuProblem#getSolution()} is valid
+	 * as long as 
+	 * {@link SudokuProblem#hasSolution()} returns {@code true}.
+	 * @return {@code true} if every solution was counted, {@code false} if the
+	 * search was stopped early.
+	 */
+	public boolean isComplete() {
+		return complete;
 	}
 	
 	public boolean hasSolution() {
@@ -108,7 +254,7 @@ public class SudokuProblem {
 	}
 	
 	public boolean hasUniqueSolution() {
-		return solutionCount == 1;
+		return complete && solutionCount == 1;
 	}
 	
 	public int[][] getSolution() {
@@ -122,4 +268,13 @@ public class SudokuProblem {
 	public int getNumberOfSolutions() {
 		return solutionCount;
 	}
+	
+	/**
+	 * Gets the statistics of the search for solutions, e.g. the number of
+	 * visited nodes.
+	 * @return The statistics of this problem's search.
+	 */
+	public SearchStatistics getStatistics() {
+		return statistics;
+	}
 }
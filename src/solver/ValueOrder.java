@@ -0,0 +1,50 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package solver;
+
+/**
+ * The order in which a search tries the alternatives of a branching: the
+ * values of a cell or the cells of a unit that may take a value. The order
+ * doesn't change which solutions are found, but it decides how soon the 
+ * first one is found and which dead ends are explored on the way.
+ * @author robert
+ *
+ */
+public enum ValueOrder {
+	
+	/** Values from 1 up and cells in the order of their unit. */
+	ASCENDING,
+	/** Values from N down and cells in the reverse order of their unit. */
+	DESCENDING,
+	/** A random order for every branching. */
+	RANDOM,
+	/** The alternatives that remove the value from the fewest unassigned 
+	 * peers first (least constraining value). */
+	LEAST_CONSTRAINING;
+	
+	/**
+	 * Parses the name of an order, ignoring case and allowing dashes instead
+	 * of underscores, e.g. "least-constraining".
+	 * @param name The name of an order.
+	 * @return The order.
+	 * @throws IllegalArgumentException If there is no order of that name.
+	 */
+	public static ValueOrder parse(String name) {
+		return valueOf(name.trim().toUpperCase().replace('-', '_'));
+	}
+}
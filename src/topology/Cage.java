@@ -0,0 +1,60 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package topology;
+
+import java.util.Arrays;
+
+/**
+ * A cage of a killer Sudoku: a group of cells whose values are different and
+ * add up to a given sum. Cages are immutable.
+ * @author robert
+ *
+ */
+public final class Cage {
+
+	private final int[] cells;
+	private final int sum;
+	
+	/**
+	 * Creates a cage.
+	 * @param cells The indices of the cage's cells, see 
+	 * {@link Topology#getCell(int, int)}.
+	 * @param sum The sum of the values of the cells.
+	 */
+	public Cage(int[] cells, int sum) {
+		this.cells = cells.clone();
+		this.sum = sum;
+	}
+	
+	/**
+	 * Gets the cells of this cage.
+	 * @return The shared array of cell indices.
+	 */
+	public int[] getCells() {
+		return cells;
+	}
+	
+	public int getSum() {
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(cells) + "=" + sum;
+	}
+}
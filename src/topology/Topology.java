@@ -0,0 +1,491 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package topology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Describes which cells of a Sudoku grid constrain each other. The cells of
+ * a grid with R rows and C columns are numbered row by row from 0 to 
+ * R * C - 1. A unit is a set of N cells that have to take the values 1 to N,
+ * e.g. a row, column or block of a standard Sudoku with N = 9. Two cells are
+ * peers if they share a unit or are linked by an additional constraint of a
+ * {@link Variant}, and thus must not take the same value. Cells that belong
+ * to no unit are not part of the puzzle, e.g. the gaps between the grids of
+ * a samurai Sudoku, see {@link Topology#contains(int)}.
+ * <p>
+ * Units, the units of every cell and the peers of every cell are computed 
+ * once when the topology is created, so searches only walk flat arrays 
+ * instead of recomputing rows, columns and blocks. A topology is immutable
+ * and may be shared by any number of searches and threads. The arrays 
+ * returned by its getters are shared as well and must not be modified.
+ * @author robert
+ *
+ */
+public final class Topology {
+
+	// classic topologies by box size, created on first use
+	private static final Topology[] classic = new Topology[6];
+	
+	private final int rows;
+	private final int columns;
+	private final int size;
+	
+	private final int[][] units;
+	// cellUnits[cell] are the units containing the cell
+	private final int[][] cellUnits;
+	// peers[cell] are the other cells of the cell's units in ascending order
+	private final int[][] peers;
+	private final int maxPeerCount;
+	private final Cage[] cages;
+	
+	/**
+	 * Creates a topology from a list of units.
+	 * @param rows The number of rows of the grid.
+	 * @param columns The number of columns of the grid.
+	 * @param size The number of values, which is also the number of cells of
+	 * every unit.
+	 * @param units The cell indices of every unit. Cells are numbered row by
+	 * row, the cell in row r and column c has the index r * columns + c.
+	 * @throws IllegalArgumentException If a unit doesn't consist of size
+	 * different cells of the grid.
+	 */
+	public Topology(int rows, int columns, int size, int[][] units) {
+		this(rows, columns, size, units, new int[0][]);
+	}
+	
+	/**
+	 * Creates a topology from a list of units and pairs of cells that must
+	 * not take the same value without sharing a unit, e.g. cells that touch
+	 * diagonally in an anti-king Sudoku.
+	 * @param rows The number of rows of the grid.
+	 * @param columns The number of columns of the grid.
+	 * @param size The number of values, which is also the number of cells of
+	 * every unit.
+	 * @param units The cell indices of every unit. Cells are numbered row by
+	 * row, the cell in row r and column c has the index r * columns + c.
+	 * @param peerPairs Pairs of cell indices that are peers.
+	 * @throws IllegalArgumentException If a unit doesn't consist of size
+	 * different cells of the grid or a pair contains an invalid cell.
+	 */
+	public Topology(int rows, int columns, int size, int[][] units, 
+			int[][] peerPairs) {
+		this(rows, columns, size, units, peerPairs, new Cage[0]);
+	}
+	
+	private Topology(int rows, int columns, int size, int[][] units, 
+			int[][] peerPairs, Cage[] cages) {
+		if(size < 1 || size > Long.SIZE)
+			throw new IllegalArgumentException("Unsupported number of values: " 
+					+ size);
+		this.rows = rows;
+		this.columns = columns;
+		this.size = size;
+		this.units = new int[units.length][];
+		for(int unit = 0; unit < units.length; unit++)
+			this.units[unit] = checkUnit(units[unit]);
+		cellUnits = initCellUnits();
+		peers = initPeers(peerPairs);
+		int max = 0;
+		for(int[] cellPeers : peers)
+			max = Math.max(max, cellPeers.length);
+		maxPeerCount = max;
+		this.cages = cages;
+	}
+	
+	/**
+	 * Gets the topology of a standard Sudoku with the provided box size, i.e.
+	 * a grid of N x N cells, N being the square of the box size, with N rows,
+	 * N columns and N blocks as units. Units are numbered rows first (0 to 
+	 * N - 1), then columns (N to 2N - 1), then blocks (2N to 3N - 1), blocks
+	 * counting from left to right and top to bottom.
+	 * @param boxSize The number of rows of a block, from 1 to 5.
+	 * @return The shared topology for the box size.
+	 */
+	public static synchronized Topology getClassic(int boxSize) {
+		if(boxSize < 1 || boxSize >= classic.length)
+			throw new IllegalArgumentException("Unsupported box size: " 
+					+ boxSize);
+		if(classic[boxSize] == null)
+			classic[boxSize] = createClassic(boxSize);
+		return classic[boxSize];
+	}
+	
+	/**
+	 * Creates the topology of a standard Sudoku with the constraints of the
+	 * provided variants. The units of the standard Sudoku keep their indices
+	 * (see {@link Topology#getClassic(int)}), the diagonals follow as units
+	 * 3N and 3N + 1, then the disjoint groups, one for every position within
+	 * a block.
+	 * @param boxSize The number of rows of a block, from 1 to 5.
+	 * @param variants The additional constraints. 
+	 * @return The shared classic topology if no variants are given, a new 
+	 * topology otherwise.
+	 */
+	public static Topology getVariant(int boxSize, Set<Variant> variants) {
+		Topology classic = getClassic(boxSize);
+		if(variants.isEmpty())
+			return classic;
+		int size = classic.size;
+		List<int[]> units = new ArrayList<int[]>(Arrays.asList(classic.units));
+		if(variants.contains(Variant.DIAGONAL)) {
+			int[] mainDiagonal = new int[size];
+			int[] antiDiagonal = new int[size];
+			for(int i = 0; i < size; i++) {
+				mainDiagonal[i] = i * size + i;
+				antiDiagonal[i] = i * size + size - 1 - i;
+			}
+			units.add(mainDiagonal);
+			units.add(antiDiagonal);
+		}
+		if(variants.contains(Variant.DISJOINT_GROUPS))
+			for(int position = 0; position < size; position++) {
+				int[] group = new int[size];
+				for(int block = 0; block < size; block++)
+					group[block] = classic.units[2 * size + block][position];
+				units.add(group);
+			}
+		
+		// moves from a cell to the peers in the rows below it
+		List<int[]> moves = new ArrayList<int[]>();
+		if(variants.contains(Variant.ANTI_KING)) {
+			moves.add(new int[] {1, -1});
+			moves.add(new int[] {1, 1});
+		}
+		if(variants.contains(Variant.ANTI_KNIGHT)) {
+			moves.add(new int[] {1, -2});
+			moves.add(new int[] {1, 2});
+			moves.add(new int[] {2, -1});
+			moves.add(new int[] {2, 1});
+		}
+		List<int[]> pairs = new ArrayList<int[]>();
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				for(int[] move : moves) {
+					int peerRow = row + move[0];
+					int peerCol = col + move[1];
+					if(peerRow < size && peerCol >= 0 && peerCol < size)
+						pairs.add(new int[] {row * size + col, 
+								peerRow * size + peerCol});
+				}
+		return new Topology(size, size, size, 
+				units.toArray(new int[units.size()][]), 
+				pairs.toArray(new int[pairs.size()][]));
+	}
+	
+	/**
+	 * Creates the topology of a jigsaw Sudoku, i.e. a Sudoku with irregular
+	 * regions instead of blocks. Units are numbered rows first (0 to N - 1),
+	 * then columns (N to 2N - 1), then regions (2N to 3N - 1).
+	 * @param regions A N x N region map with values from 1 to N. The cells
+	 * with value r form region r.
+	 * @return A new topology for the region map.
+	 * @throws IllegalArgumentException If the map is not square or a region
+	 * doesn't consist of N cells.
+	 */
+	public static Topology getJigsaw(int[][] regions) {
+		int size = regions.length;
+		int[][] units = new int[3 * size][];
+		int[] regionSizes = new int[size];
+		for(int i = 0; i < size; i++) {
+			units[i] = new int[size];
+			units[size + i] = new int[size];
+			units[2 * size + i] = new int[size];
+		}
+		for(int row = 0; row < size; row++) {
+			if(regions[row].length != size)
+				throw new IllegalArgumentException("The region map is not "
+						+ "square");
+			for(int col = 0; col < size; col++) {
+				units[row][col] = row * size + col;
+				units[size + col][row] = row * size + col;
+				int region = regions[row][col] - 1;
+				if(region < 0 || region >= size || regionSizes[region] == size)
+					throw new IllegalArgumentException("Region " + (region + 1)
+							+ " is invalid or has more than " + size + " cells");
+				units[2 * size + region][regionSizes[region]++] = row * size + col;
+			}
+		}
+		return new Topology(size, size, size, units);
+	}
+	
+	/**
+	 * Creates the topology of a samurai Sudoku: five standard grids, one in
+	 * the center and one at every corner, that share a corner block with the
+	 * center grid. With box size 3, the grids lie in a 21 x 21 grid; its 
+	 * cells outside the five grids are not part of the puzzle. All grids 
+	 * form one network, so values propagate through the shared blocks.
+	 * <p>
+	 * The grids are numbered top left, top right, bottom left, bottom right
+	 * and center. Every grid adds its rows, columns and blocks as units in 
+	 * this order, except the center grid, which only adds the blocks not 
+	 * shared with another grid.
+	 * @param boxSize The number of rows of a block, from 2 to 5.
+	 * @return A new topology with N = boxSize * boxSize values and 
+	 * 3N - 2 * boxSize rows and columns.
+	 */
+	public static Topology getSamurai(int boxSize) {
+		if(boxSize < 2 || boxSize >= classic.length)
+			throw new IllegalArgumentException("Unsupported box size: " 
+					+ boxSize);
+		int size = boxSize * boxSize;
+		int shift = size - boxSize; // offset of the center grid
+		int length = 2 * shift + size;
+		int[][] offsets = {{0, 0}, {0, 2 * shift}, {2 * shift, 0}, 
+				{2 * shift, 2 * shift}, {shift, shift}};
+		int[][] gridUnits = getClassic(boxSize).units;
+		List<int[]> units = new ArrayList<int[]>();
+		for(int grid = 0; grid < offsets.length; grid++)
+			for(int unit = 0; unit < gridUnits.length; unit++) {
+				int block = unit - 2 * size;
+				boolean corner = block >= 0 
+						&& block / boxSize % (boxSize - 1) == 0 
+						&& block % boxSize % (boxSize - 1) == 0;
+				if(grid == offsets.length - 1 && corner)
+					continue; // a block of a corner grid
+				int[] cells = new int[size];
+				for(int i = 0; i < size; i++) {
+					int cell = gridUnits[unit][i];
+					cells[i] = (offsets[grid][0] + cell / size) * length 
+							+ offsets[grid][1] + cell % size;
+				}
+				units.add(cells);
+			}
+		return new Topology(length, length, size, 
+				units.toArray(new int[units.size()][]));
+	}
+	
+	/**
+	 * Creates a topology with the units and peers of this topology and the
+	 * provided killer cages. The cells of a cage become peers, as they must
+	 * take different values.
+	 * @param cages Cages that don't overlap. 
+	 * @return A new topology with the cages.
+	 * @throws IllegalArgumentException If cages overlap, a cage contains an
+	 * invalid cell or more cells than there are values.
+	 */
+	public Topology withCages(List<Cage> cages) {
+		List<int[]> pairs = new ArrayList<int[]>();
+		for(int cell = 0; cell < peers.length; cell++)
+			for(int peer : peers[cell])
+				if(peer > cell)
+					pairs.add(new int[] {cell, peer});
+		boolean[] caged = new boolean[getCellCount()];
+		for(Cage cage : cages) {
+			int[] cells = cage.getCells();
+			if(cells.length > size)
+				throw new IllegalArgumentException("The cage " + cage 
+						+ " has more than " + size + " cells");
+			for(int i = 0; i < cells.length; i++) {
+				if(!isCell(cells[i]) || caged[cells[i]])
+					throw new IllegalArgumentException("The cage " + cage
+							+ " overlaps another cage or is invalid");
+				caged[cells[i]] = true;
+				for(int j = i + 1; j < cells.length; j++)
+					pairs.add(new int[] {cells[i], cells[j]});
+			}
+		}
+		return new Topology(rows, columns, size, units, 
+				pairs.toArray(new int[pairs.size()][]), 
+				cages.toArray(new Cage[cages.size()]));
+	}
+	
+	private static Topology createClassic(int boxSize) {
+		int size = boxSize * boxSize;
+		int[][] units = new int[3 * size][size];
+		for(int i = 0; i < size; i++)
+			for(int k = 0; k < size; k++) {
+				units[i][k] = i * size + k; // row i
+				units[size + i][k] = k * size + i; // column i
+				int row = (i / boxSize) * boxSize + k / boxSize;
+				int col = (i % boxSize) * boxSize + k % boxSize;
+				units[2 * size + i][k] = row * size + col; // block i
+			}
+		return new Topology(size, size, size, units);
+	}
+	
+	private boolean isCell(int cell) {
+		return cell >= 0 && cell < getCellCount();
+	}
+	
+	private int[] checkUnit(int[] unit) {
+		if(unit.length != size)
+			throw new IllegalArgumentException("A unit has " + unit.length 
+					+ " instead of " + size + " cells");
+		boolean[] contained = new boolean[getCellCount()];
+		for(int cell : unit) {
+			if(cell < 0 || cell >= contained.length || contained[cell])
+				throw new IllegalArgumentException("Invalid cell in unit: " 
+						+ cell);
+			contained[cell] = true;
+		}
+		return unit.clone();
+	}
+	
+	private int[][] initCellUnits() {
+		int[] counts = new int[getCellCount()];
+		for(int[] unit : units)
+			for(int cell : unit)
+				counts[cell]++;
+		int[][] result = new int[counts.length][];
+		for(int cell = 0; cell < counts.length; cell++)
+			result[cell] = new int[counts[cell]];
+		for(int unit = 0; unit < units.length; unit++)
+			for(int cell : units[unit])
+				result[cell][--counts[cell]] = unit;
+		// list the units of each cell in ascending order
+		for(int[] list : result)
+			Arrays.sort(list);
+		return result;
+	}
+	
+	private int[][] initPeers(int[][] peerPairs) {
+		int[][] result = new int[getCellCount()][];
+		List<List<Integer>> pairedPeers = new ArrayList<List<Integer>>();
+		for(int cell = 0; cell < result.length; cell++)
+			pairedPeers.add(new ArrayList<Integer>());
+		for(int[] pair : peerPairs) {
+			if(pair.length != 2 || pair[0] == pair[1] 
+					|| !isCell(pair[0]) || !isCell(pair[1]))
+				throw new IllegalArgumentException("Invalid pair of peers: " 
+						+ Arrays.toString(pair));
+			pairedPeers.get(pair[0]).add(pair[1]);
+			pairedPeers.get(pair[1]).add(pair[0]);
+		}
+		
+		boolean[] isPeer = new boolean[getCellCount()];
+		for(int cell = 0; cell < result.length; cell++) {
+			int count = 0;
+			for(int unit : cellUnits[cell])
+				for(int other : units[unit])
+					if(other != cell && !isPeer[other]) {
+						isPeer[other] = true;
+						count++;
+					}
+			for(int other : pairedPeers.get(cell))
+				if(!isPeer[other]) {
+					isPeer[other] = true;
+					count++;
+				}
+			int[] cellPeers = new int[count];
+			int i = 0;
+			for(int other = 0; other < isPeer.length; other++)
+				if(isPeer[other]) {
+					cellPeers[i++] = other;
+					isPeer[other] = false;
+				}
+			result[cell] = cellPeers;
+		}
+		return result;
+	}
+	
+	public int getRows() {
+		return rows;
+	}
+	
+	public int getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * Gets the number of values a cell can take, which is also the number of
+	 * cells of every unit.
+	 * @return The number of values, e.g. 9 for a standard Sudoku.
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	public int getCellCount() {
+		return rows * columns;
+	}
+	
+	/**
+	 * Checks if a cell is part of the puzzle, i.e. belongs to some unit.
+	 * Every cell of a standard Sudoku is, the gaps between the grids of a
+	 * samurai Sudoku aren't.
+	 * @param cell A cell index.
+	 * @return {@code true} if the cell has to be filled.
+	 */
+	public boolean contains(int cell) {
+		return cellUnits[cell].length > 0;
+	}
+	
+	public int getCell(int row, int col) {
+		return row * columns + col;
+	}
+	
+	public int getRow(int cell) {
+		return cell / columns;
+	}
+	
+	public int getColumn(int cell) {
+		return cell % columns;
+	}
+	
+	public int getUnitCount() {
+		return units.length;
+	}
+	
+	/**
+	 * Gets the cells of a unit.
+	 * @param unit A unit index from 0 to {@link Topology#getUnitCount()} - 1.
+	 * @return The shared array of the unit's cell indices.
+	 */
+	public int[] getUnit(int unit) {
+		return units[unit];
+	}
+	
+	/**
+	 * Gets the units that contain a cell.
+	 * @param cell A cell index.
+	 * @return The shared array of unit indices in ascending order.
+	 */
+	public int[] getUnits(int cell) {
+		return cellUnits[cell];
+	}
+	
+	/**
+	 * Gets the cells that must not take the same value as a cell.
+	 * @param cell A cell index.
+	 * @return The shared array of peer cell indices in ascending order.
+	 */
+	public int[] getPeers(int cell) {
+		return peers[cell];
+	}
+	
+	/**
+	 * Gets the cages of a killer Sudoku.
+	 * @return The shared array of cages, empty if the topology has no cages.
+	 */
+	public Cage[] getCages() {
+		return cages;
+	}
+	
+	/**
+	 * Gets the largest number of peers of any cell, e.g. 20 for a standard
+	 * Sudoku. Use it to size buffers that record changes of peers.
+	 * @return The maximum length of {@link Topology#getPeers(int)}.
+	 */
+	public int getMaxPeerCount() {
+		return maxPeerCount;
+	}
+}
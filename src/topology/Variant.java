@@ -0,0 +1,48 @@
+/* SudokuTools - Tools for generating, solving and rating Sudoku puzzles.
+ * Copyright (C) 2014 Robert Grönsfeld
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package topology;
+
+/**
+ * Additional constraints of Sudoku variants. Each variant either adds units
+ * to the rows, columns and blocks of a standard Sudoku or makes pairs of 
+ * cells peers, see {@link Topology#getVariant(int, java.util.Set)}.
+ * @author robert
+ *
+ */
+public enum Variant {
+	
+	/** Both main diagonals contain every value once (X-Sudoku). */
+	DIAGONAL,
+	/** Cells that touch diagonally must not take the same value. */
+	ANTI_KING,
+	/** Cells a chess knight's move apart must not take the same value. */
+	ANTI_KNIGHT,
+	/** The cells at the same position in every block form a unit. */
+	DISJOINT_GROUPS;
+	
+	/**
+	 * Parses the name of a variant, ignoring case and allowing dashes 
+	 * instead of underscores, e.g. "anti-king".
+	 * @param name The name of a variant.
+	 * @return The variant.
+	 * @throws IllegalArgumentException If there is no variant of that name.
+	 */
+	public static Variant parse(String name) {
+		return valueOf(name.trim().toUpperCase().replace('-', '_'));
+	}
+}
@@ -17,45 +17,62 @@
 
 package utile;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Scanner;
 
+import monitoring.IOEvent;
+import monitoring.Metrics;
 import rating.Rater;
+import topology.Cage;
 
 /**
- * Permits to save and load 9x9 Sudoku problems and solutions. Problems and
- * solutions are represented as 9x9 integer arrays. 
+ * Permits to save and load Sudoku problems and solutions. Problems and
+ * solutions are represented as N x N integer arrays, N being the square of
+ * a box size up to 5, e.g. 9x9 or 16x16 arrays. 
  * @author robert
  *
  */
 public class SudokuIO {
 	
+	// symbols of the values 1 to 25 in the short format
+	private static final String SYMBOLS = "123456789ABCDEFGHIJKLMNOP";
+	
 	/**
 	 * Save a Sudoku instance to disk.
 	 * @param target Indicates where the instance should be stored.
-	 * @param sudoku 9x9 integer array representing the instance. Each entry
-	 * has to contain a value from zero to nine, zero meaning that the cell
+	 * @param sudoku N x N integer array representing the instance. Each entry
+	 * has to contain a value from zero to N, zero meaning that the cell
 	 * corresponding to the entry is empty.
 	 */
 	public static void saveSudoku(File target, int[][] sudoku) {
+		long start = System.nanoTime();
+		IOEvent event = new IOEvent();
+		event.begin();
 		try {
 			BufferedWriter saver = new BufferedWriter(new FileWriter(target));
-			for(int row = 0; row < 9; row++) {
-				for(int col = 0; col < 9; col++) {
+			int size = sudoku.length;
+			int boxSize = getBoxSize(size);
+			for(int row = 0; row < size; row++) {
+				for(int col = 0; col < size; col++) {
 					saver.write(sudoku[row][col] + " ");
-					if(col % 3 == 2) // separate blocks horizontally
+					if(col % boxSize == boxSize - 1) // separate blocks horizontally
 						saver.write(" ");
 				}
 				saver.write("\n");
-				if(row % 3 == 2) // separate blocks vertically
+				if(row % boxSize == boxSize - 1) // separate blocks vertically
 					saver.write("\n");
 			}
 			saver.close();
@@ -63,29 +80,41 @@ public class SudokuIO {
 			System.out.println(e.getMessage());
 			e.printStackTrace();
 		}
+		Metrics.record(Metrics.SAVE, System.nanoTime() - start);
+		commit(event, "save", target, sudoku);
 	}
 	
 	/**
 	 * Loads a Sudoku file from disk.
 	 * @param source The Sudoku file.
-	 * @return A 9x9 integer array. For further specification see 
+	 * @return A N x N integer array, N being the square root of the number
+	 * of values in the file. For further specification see 
 	 * {@link SudokuIO#saveSudoku(File, int[][])}
 	 */
 	public static int[][] loadSudoku(File source) {
+		long start = System.nanoTime();
+		IOEvent event = new IOEvent();
+		event.begin();
 		try {
 			Scanner valueReader = new Scanner(source);
-			int[][] sudoku = new int[9][9];
+			List<Integer> values = new ArrayList<Integer>(81);
+			while(valueReader.hasNextInt())
+				values.add(valueReader.nextInt());
+			valueReader.close();
+			int size = getSize(values.size());
+			int[][] sudoku = new int[size][size];
 			int currentRow = 0;
 			int currentCol = 0;
-			while(valueReader.hasNextInt()) {
-				sudoku[currentRow][currentCol] = valueReader.nextInt();
-				currentCol++;		 	// go to next value in current row
-				if(currentCol > 8) {	// last value in current row visited
-					currentCol = 0; 	// proceed with first value ...
-					currentRow++;		// ... in the next row
+			for(int value : values) {
+				sudoku[currentRow][currentCol] = value;
+				currentCol++;		 		// go to next value in current row
+				if(currentCol == size) {	// last value in current row visited
+					currentCol = 0; 		// proceed with first value ...
+					currentRow++;			// ... in the next row
 				}
 			}
-			valueReader.close();
+			Metrics.record(Metrics.LOAD, System.nanoTime() - start);
+			commit(event, "load", source, sudoku);
 			return sudoku;
 		} catch (FileNotFoundException e) {
 			System.out.println(e.getMessage());
@@ -97,13 +126,116 @@ public class SudokuIO {
 		return new int[9][9];
 	}
 	
+	/**
+	 * Loads a file of Sudokus in the short format, one per line, e.g. a 
+	 * collection of puzzles to import. Empty lines are skipped.
+	 * @param source The file of Sudokus.
+	 * @return The Sudokus in the order of the file.
+	 * @throws IllegalArgumentException A line is not a Sudoku in the short
+	 * format.
+	 */
+	public static List<int[][]> loadSudokus(File source) {
+		return loadSudokus(source, 0, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Loads the Sudokus of a file in the short format whose lines start 
+	 * within a range of bytes, e.g. a shard of a large collection. Ranges 
+	 * may split the file at any byte: a line belongs to the range its first
+	 * byte lies in, so adjacent ranges load every line exactly once.
+	 * @param source The file of Sudokus, one per line.
+	 * @param start The offset of the first byte of the range.
+	 * @param end The offset after the last byte of the range.
+	 * @return The Sudokus in the order of the file.
+	 * @throws IllegalArgumentException A line is not a Sudoku in the short
+	 * format.
+	 */
+	public static List<int[][]> loadSudokus(File source, long start, 
+			long end) {
+		long begin = System.nanoTime();
+		IOEvent event = new IOEvent();
+		event.begin();
+		List<int[][]> sudokus = new ArrayList<int[][]>();
+		try {
+			InputStream in = new BufferedInputStream(
+					new FileInputStream(source));
+			try {
+				// read from the byte before the range to see if a line 
+				// starts at the range or has to be skipped
+				long position = Math.max(start - 1, 0);
+				for(long skipped = 0; skipped < position; ) {
+					long count = in.skip(position - skipped);
+					if(count <= 0)
+						break;
+					skipped += count;
+				}
+				boolean skipping = start > 0;
+				StringBuilder line = new StringBuilder();
+				for(int b = position < end ? in.read() : -1; b >= 0; 
+						b = in.read()) {
+					position++;
+					if(b == '\n') {
+						if(!skipping)
+							addSudoku(sudokus, line);
+						skipping = false;
+						line.setLength(0);
+						if(position >= end) // the next line is out of range
+							break;
+					}
+					else if(!skipping && b != '\r')
+						line.append((char) b);
+				}
+				if(!skipping) // the last line has no line break
+					addSudoku(sudokus, line);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+			System.exit(1);
+		}
+		Metrics.record(Metrics.LOAD, System.nanoTime() - begin);
+		commit(event, "load", source, sudokus);
+		return sudokus;
+	}
+	
+	private static void addSudoku(List<int[][]> sudokus, CharSequence line) {
+		String text = line.toString();
+		if(!text.trim().isEmpty())
+			sudokus.add(toGrid(text));
+	}
+	
+	private static void commit(IOEvent event, String operation, File file, 
+			int[][] sudoku) {
+		commit(event, operation, file, Collections.singletonList(sudoku));
+	}
+	
+	// the puzzle is only recorded for files of a single Sudoku
+	private static void commit(IOEvent event, String operation, File file, 
+			List<int[][]> sudokus) {
+		event.end();
+		if(event.shouldCommit()) {
+			event.operation = operation;
+			event.path = file.getPath();
+			event.count = sudokus.size();
+			if(sudokus.size() == 1)
+				event.puzzle = getShort(sudokus.get(0));
+			event.commit();
+		}
+	}
+	
 	/**
 	 * Load a Sudoku given in the short format: <br/>
 	 * 8...4...6.7........451.6.2.9..4....1.3..9..7.6
 	 * ....8..4.2.6.194........6.7...3...2 <br/>
-	 * Rows written one after another. Points stand for blank fields.
+	 * Rows written one after another. Points stand for blank fields. Values
+	 * from 10 to 25 of larger grids are written as letters A to P.
 	 * @param shortSudoku A Sudoku in the short format.
-	 * @return A 9x9 integer array representing the given Sudoku.
+	 * @return A N x N integer array representing the given Sudoku, N being 
+	 * the square root of the length of the short format.
+	 * @throws IllegalArgumentException The length is not square or a symbol
+	 * is no value of the grid's size.
 	 */
 	public static int[][] loadSudoku(String shortSudoku) {
 		return toGrid(shortSudoku);
@@ -111,21 +243,135 @@ public class SudokuIO {
 	
 	/**
 	 * Use this method to get the compact version of a Sudoku instance.
-	 * @param sudoku A 9x9 integer array that represents a Sudoku instance.
+	 * @param sudoku A N x N integer array that represents a Sudoku instance.
 	 * @return A line of text representing the same instance. See
 	 * {@link SudokuIO#loadSudoku(String)} to get more detailed information
 	 * on the output format.
 	 */
 	public static String getShort(int[][] sudoku) {
-		String shortSudoku = "";
-		for(int row = 0; row < 9; row++)
-			for(int col = 0; col < 9; col++)
-				if(sudoku[row][col] == 0)
-					shortSudoku = shortSudoku.concat(".");
-				else
-					shortSudoku = shortSudoku.concat(
-							Integer.toString(sudoku[row][col]));
-		return shortSudoku;
+		int size = sudoku.length;
+		char[] symbols = new char[size * size];
+		for(int row = 0; row < size; row++)
+			for(int col = 0; col < size; col++)
+				symbols[row * size + col] = toSymbol(sudoku[row][col]);
+		return new String(symbols);
+	}
+	
+	/**
+	 * Gets the cages of a killer Sudoku in the short format: <br/>
+	 * 3:0,1;15:2,11,12;... <br/>
+	 * Cages separated by semicolons, each given by its sum followed by the
+	 * indices of its cells, counted row by row from 0.
+	 * @param cages The cages of a killer Sudoku.
+	 * @return A line of text representing the cages.
+	 */
+	public static String getCages(List<Cage> cages) {
+		StringBuilder builder = new StringBuilder();
+		for(Cage cage : cages) {
+			if(builder.length() > 0)
+				builder.append(';');
+			builder.append(cage.getSum()).append(':');
+			int[] cells = cage.getCells();
+			for(int i = 0; i < cells.length; i++) {
+				if(i > 0)
+					builder.append(',');
+				builder.append(cells[i]);
+			}
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Loads the cages of a killer Sudoku given in the short format, see
+	 * {@link SudokuIO#getCages(List)}.
+	 * @param shortCages The cages in the short format.
+	 * @return The cages.
+	 * @throws IllegalArgumentException A cage is malformed.
+	 */
+	public static List<Cage> loadCages(String shortCages) {
+		List<Cage> cages = new ArrayList<Cage>();
+		for(String shortCage : shortCages.split(";")) {
+			String[] parts = shortCage.trim().split(":");
+			if(parts.length != 2)
+				throw new IllegalArgumentException("Malformed cage " + 
+						shortCage);
+			String[] shortCells = parts[1].split(",");
+			int[] cells = new int[shortCells.length];
+			try {
+				for(int i = 0; i < cells.length; i++)
+					cells[i] = Integer.parseInt(shortCells[i].trim());
+				cages.add(new Cage(cells, Integer.parseInt(parts[0].trim())));
+			}
+			catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Malformed cage " + 
+						shortCage, e);
+			}
+		}
+		return cages;
+	}
+	
+	/**
+	 * Gets the symbol of a value in the short format.
+	 * @param value A value from 0 to 25.
+	 * @return '.' for 0, a digit for values up to 9 and a letter from A to P 
+	 * for larger values.
+	 */
+	public static char toSymbol(int value) {
+		if(value == 0)
+			return '.';
+		return SYMBOLS.charAt(value - 1);
+	}
+	
+	private static int toValue(char symbol, int maxValue) {
+		if(symbol == '.' || symbol == '0')
+			return 0;
+		int value = SYMBOLS.indexOf(Character.toUpperCase(symbol)) + 1;
+		if(value == 0)
+			throw new IllegalArgumentException("Unknown symbol " + symbol);
+		if(value > maxValue)
+			throw new IllegalArgumentException("Symbol " + symbol 
+					+ " exceeds the largest value " + maxValue);
+		return value;
+	}
+	
+	// the number of values of a grid with the given rows, e.g. 9 for 9 x 9
+	// grids and for samurai grids of 21 x 21 cells
+	private static int getMaxValue(int size) {
+		for(int boxSize = 1; boxSize <= 5; boxSize++)
+			if(boxSize * boxSize == size 
+					|| 3 * boxSize * boxSize - 2 * boxSize == size)
+				return boxSize * boxSize;
+		return SYMBOLS.length();
+	}
+	
+	/**
+	 * Determines the size of a Sudoku grid from its number of cells.
+	 * @param cellCount The number of cells, e.g. 81.
+	 * @return The number of rows of the grid, e.g. 9.
+	 * @throws IllegalArgumentException The cell count doesn't belong to a 
+	 * grid with a box size up to 5.
+	 */
+	public static int getSize(int cellCount) {
+		int size = (int) Math.round(Math.sqrt(cellCount));
+		if(size * size != cellCount)
+			throw new IllegalArgumentException(
+					"Not a square grid: " + cellCount + " cells");
+		getBoxSize(size);
+		return size;
+	}
+	
+	/**
+	 * Determines the box size of a Sudoku grid.
+	 * @param size The number of rows of the grid, e.g. 9.
+	 * @return The number of rows of a box, e.g. 3.
+	 * @throws IllegalArgumentException The size is not the square of a box
+	 * size up to 5.
+	 */
+	public static int getBoxSize(int size) {
+		int boxSize = (int) Math.round(Math.sqrt(size));
+		if(boxSize * boxSize != size || boxSize < 1 || boxSize > 5)
+			throw new IllegalArgumentException("Unsupported grid size " + size);
+		return boxSize;
 	}
 	
 	public static void createTrainingTable(String puzzleFile) {
@@ -172,15 +418,18 @@ public class SudokuIO {
 	}
 
 	private static int[][] toGrid(String line) {
-		int[][] grid = new int[9][9];
-		for(int i = 0; i < 81; i++) {
-			int row = i / 9;
-			int col = i % 9;
-			char currentChar = line.charAt(i);
-			if(currentChar == '.')
-				grid[row][col] = 0;
-			else
-				grid[row][col] = (int) (currentChar - '0');
+		line = line.trim();
+		// samurai Sudokus have more rows than values, e.g. 21 x 21 cells
+		int size = (int) Math.round(Math.sqrt(line.length()));
+		if(size * size != line.length())
+			throw new IllegalArgumentException(
+					"Not a square grid: " + line.length() + " cells");
+		int maxValue = getMaxValue(size);
+		int[][] grid = new int[size][size];
+		for(int i = 0; i < size * size; i++) {
+			int row = i / size;
+			int col = i % size;
+			grid[row][col] = toValue(line.charAt(i), maxValue);
 		}
 		return grid;
 	}
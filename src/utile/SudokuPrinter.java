@@ -18,7 +18,9 @@
 package utile;
 
 /**
- * This class provides functionality to print Sudoku instances.
+ * This class provides functionality to print Sudoku instances. Every 
+ * instance is formatted into a buffer first and printed with a single 
+ * call.
  * @author robert
  *
  */
@@ -26,33 +28,45 @@ public class SudokuPrinter {
 
 	/**
 	 * Print a Sudoku instance to the standard output.
-	 * @param sudoku A 9x9 Sudoku as integer array.
+	 * @param sudoku A N x N Sudoku as integer array, e.g. a 9x9 Sudoku.
 	 */
 	public static void print(int[][] sudoku) {
-		for(int row = 0; row < 9; row++) {
-			for(int col = 0; col < 9; col++) {
-				System.out.print(sudoku[row][col]);
-				System.out.print(" "); // column separation
-				if(col % 3 == 2) // horizontal block separation
-					System.out.print(" ");
+		StringBuilder builder = new StringBuilder(
+				4 * sudoku.length * (sudoku.length + 2));
+		format(sudoku, builder);
+		System.out.print(builder);
+	}
+	
+	/**
+	 * Formats a Sudoku instance like {@link SudokuPrinter#print(int[][])}, 
+	 * e.g. to reuse one buffer for many instances.
+	 * @param sudoku A N x N Sudoku as integer array, e.g. a 9x9 Sudoku.
+	 * @param builder Receives the rows of the instance, each ending with a
+	 * line break.
+	 */
+	public static void format(int[][] sudoku, StringBuilder builder) {
+		int size = sudoku.length;
+		int boxSize = SudokuIO.getBoxSize(size);
+		for(int row = 0; row < size; row++) {
+			for(int col = 0; col < size; col++) {
+				if(size > 9 && sudoku[row][col] < 10) // align two digit values
+					builder.append(' ');
+				builder.append(sudoku[row][col]);
+				builder.append(' '); // column separation
+				if(col % boxSize == boxSize - 1) // horizontal block separation
+					builder.append(' ');
 			}
-			System.out.println(); // row separation
-			if(row % 3 == 2 && row != 8) // vertical block separation
-				System.out.println();
+			builder.append('\n'); // row separation
+			if(row % boxSize == boxSize - 1 && row != size - 1) 
+				builder.append('\n'); // vertical block separation
 		}
 	}
 	
 	/**
 	 * Print a Sudoku instance to the standard output using a compact format.
-	 * @param sudoku A 9x9 Sudoku as integer array.
+	 * @param sudoku A N x N Sudoku as integer array, e.g. a 9x9 Sudoku.
 	 */
 	public static void printShort(int[][] sudoku) {
-		for(int row = 0; row < 9; row++)
-			for(int col = 0; col < 9; col++)
-				if(sudoku[row][col] == 0)
-					System.out.print(".");
-				else
-					System.out.print(sudoku[row][col]);
-		System.out.println();
+		System.out.println(SudokuIO.getShort(sudoku));
 	}
 }